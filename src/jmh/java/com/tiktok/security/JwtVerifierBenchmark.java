@@ -0,0 +1,97 @@
+package com.tiktok.security;
+
+import com.tiktok.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh xác thực access token kiểu cũ (dựng key + parser và parse token 3 lần mỗi request)
+ * với JwtVerifier không cache và có cache theo chữ ký.
+ *
+ * Chạy: mvn -P benchmark compile exec:exec -Djmh.benchmark=JwtVerifierBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerifierBenchmark {
+
+    private String secret;
+    private String token;
+    private JwtVerifier uncached;
+    private JwtVerifier cached;
+
+    @Setup
+    public void setup() {
+        byte[] keyBytes = new byte[32];
+        new SecureRandom().nextBytes(keyBytes);
+        secret = Encoders.BASE64.encode(keyBytes);
+        token = Jwts.builder()
+                .setClaims(Map.of(
+                        JwtService.CLAIM_USER_ID, 42L,
+                        JwtService.CLAIM_ROLES, List.of(JwtService.ROLE_USER),
+                        JwtService.CLAIM_TOKEN_VERSION, 0))
+                .setSubject("user@example.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(keyBytes), SignatureAlgorithm.HS256)
+                .compact();
+        // Kích thước 0 tắt cache: mọi lần gọi đều parse và tính HMAC
+        uncached = new JwtVerifier(secret, 0);
+        cached = new JwtVerifier(secret, 10_000);
+        cached.verify(token);
+    }
+
+    /**
+     * Luồng cũ: extractUsername trong filter, rồi isTokenValid parse lại cho subject và expiration
+     */
+    @Benchmark
+    public boolean legacyParsePerClaim() {
+        String username = legacyClaims().getSubject();
+        String subject = legacyClaims().getSubject();
+        Date expiration = legacyClaims().getExpiration();
+        return username.equals(subject) && !expiration.before(new Date());
+    }
+
+    @Benchmark
+    public AuthenticatedUser verifierSinglePass() {
+        return uncached.verify(token);
+    }
+
+    @Benchmark
+    public AuthenticatedUser verifierCachedSignature() {
+        return cached.verify(token);
+    }
+
+    private Claims legacyClaims() {
+        Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+        return Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -1,18 +1,17 @@
 package com.tiktok.config;
 
-import com.tiktok.service.JwtService;
-import com.tiktok.service.CustomUserDetailsService;
+import com.tiktok.security.AuthenticatedUser;
+import com.tiktok.security.JwtVerifier;
+import com.tiktok.service.UserStateCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 
-import com.tiktok.repository.UserRepository;
 import javax.servlet.http.HttpServletRequest;
 import java.util.Map;
 
@@ -21,9 +20,8 @@ import java.util.Map;
 @Slf4j
 public class WebSocketAuthInterceptor implements HandshakeInterceptor {
 
-    private final JwtService jwtService;
-    private final CustomUserDetailsService userDetailsService;
-    private final UserRepository userRepository;
+    private final JwtVerifier jwtVerifier;
+    private final UserStateCache userStateCache;
 
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
@@ -46,14 +44,10 @@ public class WebSocketAuthInterceptor implements HandshakeInterceptor {
             
             if (token != null && !token.isEmpty()) {
                 try {
-                    String email = jwtService.extractUsername(token);
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                    // Validate token
-                    if (jwtService.isTokenValid(token, userDetails)) {
-                        // Lấy userId từ token và lưu vào attributes để dùng sau
-                        Long userId = userRepository.findByEmail(email).get().getId();
-                        // Có thể lấy userId từ email hoặc từ token claims
-                        // attributes.put("userId", userId);
+                    // Validate token, userId lấy từ claim và lưu vào attributes để dùng sau
+                    AuthenticatedUser user = jwtVerifier.verify(token);
+                    if (user != null && userStateCache.isActive(user.getId(), user.getTokenVersion())) {
+                        attributes.put("userId", user.getId());
                         log.info("WebSocket authentication successful for token");
                         return true;
                     } else {
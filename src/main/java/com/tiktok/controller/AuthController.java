@@ -1,9 +1,12 @@
 package com.tiktok.controller;
 
 import com.tiktok.dto.*;
+import com.tiktok.exception.UnauthorizedException;
+import com.tiktok.security.AuthenticatedUser;
 import com.tiktok.service.AuthService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
@@ -44,4 +47,14 @@ public class AuthController {
     }
     return ResponseEntity.ok(ApiResponse.success("Logout successful", null));
   }
-}
\ No newline at end of file
+
+  @PostMapping("/logout-all")
+  public ResponseEntity<ApiResponse<String>> logoutAll(
+      @AuthenticationPrincipal AuthenticatedUser user) {
+    if (user == null) {
+      throw new UnauthorizedException("Authentication required");
+    }
+    authService.logoutAll(user.getId());
+    return ResponseEntity.ok(ApiResponse.success("Logged out from all sessions", null));
+  }
+}
@@ -1,7 +1,10 @@
 package com.tiktok.controller;
 
 import com.tiktok.dto.ApiResponse;
+import com.tiktok.dto.CommentDTO;
+import com.tiktok.dto.CursorPage;
 import com.tiktok.model.Comment;
+import com.tiktok.model.DeletionJob;
 import com.tiktok.model.User;
 import com.tiktok.model.Video;
 import com.tiktok.service.CommentService;
@@ -18,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotBlank;
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
 
@@ -75,10 +79,31 @@ public class CommentController {
      * Lấy danh sách comments của video
      */
     @GetMapping
-    @Operation(summary = "Get comments", description = "Get all comments of a video")
-    public ResponseEntity<ApiResponse<List<Comment>>> getComments(@PathVariable Long videoId) {
-        List<Comment> comments = commentService.getCommentsByVideoId(videoId);
-        return ResponseEntity.ok(ApiResponse.success(comments));
+    @Operation(summary = "Get comments", description = "Get root comments of a video, newest first or top (ranked by likes and replies with time decay), each with its first replies, paged by cursor. "
+            + "Top pages past the in-memory ranking continue with the remaining comments ordered by likes")
+    public ResponseEntity<ApiResponse<List<CommentDTO>>> getComments(
+            @PathVariable Long videoId,
+            @RequestParam(defaultValue = CommentService.SORT_NEWEST) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        CursorPage<CommentDTO> comments = commentService.getComments(videoId, sort, cursor, size, viewerId);
+        return ResponseEntity.ok(ApiResponse.page(comments));
+    }
+
+    /**
+     * Tải thêm replies của một comment
+     */
+    @GetMapping("/{commentId}/replies")
+    @Operation(summary = "Get replies", description = "Get replies of a comment oldest first, paged by cursor (start from repliesCursor)")
+    public ResponseEntity<ApiResponse<List<CommentDTO>>> getReplies(
+            @PathVariable Long videoId,
+            @PathVariable Long commentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        CursorPage<CommentDTO> replies = commentService.getReplies(commentId, cursor, size, viewerId);
+        return ResponseEntity.ok(ApiResponse.page(replies));
     }
 
     /**
@@ -125,13 +150,14 @@ public class CommentController {
      * Like comment
      */
     @PostMapping("/{commentId}/like")
-    @Operation(summary = "Like comment", description = "Like a comment")
-    public ResponseEntity<ApiResponse<Comment>> likeComment(
+    @Operation(summary = "Like comment", description = "Like a comment. Repeating the request has no further effect")
+    public ResponseEntity<ApiResponse<CommentDTO>> likeComment(
             @PathVariable Long videoId,
             @PathVariable Long commentId,
             @RequestParam("user_id") Long userId) {
         
-        Comment comment = commentService.likeComment(commentId, userId);
+        commentService.likeComment(commentId, userId);
+        CommentDTO comment = commentService.getComment(commentId, userId);
         return ResponseEntity.ok(ApiResponse.success(comment));
     }
 
@@ -139,12 +165,14 @@ public class CommentController {
      * Unlike comment
      */
     @DeleteMapping("/{commentId}/like")
-    @Operation(summary = "Unlike comment", description = "Unlike a comment")
-    public ResponseEntity<ApiResponse<Comment>> unlikeComment(
+    @Operation(summary = "Unlike comment", description = "Unlike a comment. Repeating the request has no further effect")
+    public ResponseEntity<ApiResponse<CommentDTO>> unlikeComment(
             @PathVariable Long videoId,
-            @PathVariable Long commentId) {
+            @PathVariable Long commentId,
+            @RequestParam("user_id") Long userId) {
         
-        Comment comment = commentService.unlikeComment(commentId);
+        commentService.unlikeComment(commentId, userId);
+        CommentDTO comment = commentService.getComment(commentId, userId);
         return ResponseEntity.ok(ApiResponse.success(comment));
     }
 
@@ -152,12 +180,15 @@ public class CommentController {
      * Xóa comment
      */
     @DeleteMapping("/{commentId}")
-    @Operation(summary = "Delete comment", description = "Delete a comment")
-    public ResponseEntity<ApiResponse<Void>> deleteComment(
+    @Operation(summary = "Delete comment",
+            description = "Delete a comment with all its replies in the background; returns 202 with the deletion job")
+    public ResponseEntity<ApiResponse<DeletionJob>> deleteComment(
             @PathVariable Long videoId,
             @PathVariable Long commentId) {
         
-        commentService.deleteComment(commentId);
-        return ResponseEntity.ok(ApiResponse.success("Comment deleted successfully", null));
+        DeletionJob job = commentService.deleteComment(commentId);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/deletions/" + job.getId()))
+                .body(ApiResponse.success("Comment deletion accepted", job));
     }
 }
\ No newline at end of file
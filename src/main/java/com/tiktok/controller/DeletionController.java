@@ -0,0 +1,31 @@
+package com.tiktok.controller;
+
+import com.tiktok.dto.ApiResponse;
+import com.tiktok.model.DeletionJob;
+import com.tiktok.service.ContentDeletionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/deletions")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@Tag(name = "Deletions", description = "Background deletion of comments, videos and users")
+public class DeletionController {
+
+    private final ContentDeletionService contentDeletionService;
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get deletion job status",
+            description = "Status and number of deleted rows of a comment, video or user deletion")
+    public ResponseEntity<ApiResponse<DeletionJob>> getDeletionJob(@PathVariable Long jobId) {
+        return ResponseEntity.ok(ApiResponse.success(contentDeletionService.getJob(jobId)));
+    }
+}
@@ -0,0 +1,138 @@
+package com.tiktok.controller;
+
+import com.tiktok.exception.ResourceNotFoundException;
+import com.tiktok.service.LocalMediaStorage;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Phục vụ file của LocalMediaStorage (fileUrl/thumbUrl dạng /media/{publicId}).
+ *
+ * Hỗ trợ Range (206/416), ETag mạnh (sha256 của nội dung) với If-None-Match / If-Range.
+ * Byte được gửi bằng sendfile của Tomcat (FileChannel.transferTo vào socket) nên không
+ * đi qua heap. Connector không hỗ trợ sendfile (vd. TLS, response bị nén) thì không có
+ * zero-copy: khoảng byte được copy qua buffer nhỏ vào output stream của servlet.
+ */
+@RestController
+@RequestMapping("/media")
+@ConditionalOnProperty(name = "media.storage", havingValue = "local")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@Tag(name = "Media", description = "Locally stored media files")
+public class MediaController {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final LocalMediaStorage localMediaStorage;
+
+    @RequestMapping(value = "/{publicId:.+}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    @Operation(summary = "Stream media file", description = "Serve a stored file with Range / 206 Partial Content support")
+    public void serve(@PathVariable String publicId, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Path path = localMediaStorage.resolve(publicId);
+        if (!Files.isRegularFile(path)) {
+            throw new ResourceNotFoundException("Media not found with id: " + publicId);
+        }
+        long length = Files.size(path);
+
+        // publicId bắt đầu bằng sha256 nội dung nên ETag không bao giờ đổi với cùng id
+        String etag = "\"" + publicId.substring(0, 64) + "\"";
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+        if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(publicId)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long end = length - 1;
+        List<HttpRange> ranges = requestedRanges(request, etag);
+        // Chỉ phục vụ một khoảng; multi-range (multipart/byteranges) thì trả cả file
+        if (ranges.size() == 1) {
+            start = ranges.get(0).getRangeStart(length);
+            end = ranges.get(0).getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setContentLengthLong(end - start + 1);
+
+        if (RequestMethod.HEAD.name().equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            StreamUtils.copyRange(in, response.getOutputStream(), start, end);
+        }
+    }
+
+    /**
+     * Range bị bỏ qua nếu sai cú pháp hoặc If-Range không khớp ETag hiện tại
+     */
+    private static List<HttpRange> requestedRanges(HttpServletRequest request, String etag) {
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range == null || (ifRange != null && !ifRange.trim().equals(etag))) {
+            return List.of();
+        }
+        try {
+            return HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * So khớp If-None-Match (so sánh yếu, bỏ tiền tố W/)
+     */
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package com.tiktok.controller;
+
+import com.tiktok.dto.ApiResponse;
+import com.tiktok.dto.SuggestionDTO;
+import com.tiktok.service.SearchSuggestService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@Tag(name = "Search", description = "Search suggestions")
+public class SearchController {
+
+    private final SearchSuggestService searchSuggestService;
+
+    /**
+     * Gợi ý khi đang gõ, chỉ trả text và loại để payload nhỏ
+     */
+    @GetMapping("/suggest")
+    @Operation(summary = "Search suggestions",
+            description = "Top completions of a prefix from nicknames, music titles and video description terms, ranked by popularity")
+    public ResponseEntity<ApiResponse<List<SuggestionDTO>>> suggest(
+            @RequestParam(name = "q", defaultValue = "") String query,
+            @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(ApiResponse.success(searchSuggestService.suggest(query, size)));
+    }
+}
@@ -0,0 +1,51 @@
+package com.tiktok.controller;
+
+import com.tiktok.dto.ApiResponse;
+import com.tiktok.security.JwtVerifier;
+import com.tiktok.service.CommentPageCache;
+import com.tiktok.service.FollowGraphCache;
+import com.tiktok.service.FollowingTimelineService;
+import com.tiktok.service.TopCommentsService;
+import com.tiktok.service.UserStateCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@Tag(name = "Stats", description = "Runtime statistics")
+public class StatsController {
+
+    private final CommentPageCache commentPageCache;
+    private final TopCommentsService topCommentsService;
+    private final FollowGraphCache followGraphCache;
+    private final FollowingTimelineService followingTimelineService;
+    private final UserStateCache userStateCache;
+    private final JwtVerifier jwtVerifier;
+
+    /**
+     * Hit/miss, eviction và kích thước của các cache in-memory
+     */
+    @GetMapping("/caches")
+    @Operation(summary = "Cache statistics", description = "Hit/miss counts, hit rate, evictions and size of in-memory caches")
+    public ResponseEntity<ApiResponse<Map<String, Map<String, Object>>>> getCacheStats() {
+        Map<String, Map<String, Object>> caches = new LinkedHashMap<>();
+        caches.put("commentPages", commentPageCache.stats());
+        caches.put("topComments", topCommentsService.stats());
+        caches.put("followGraph", followGraphCache.stats());
+        caches.put("followingTimelines", followingTimelineService.stats());
+        caches.put("userStates", userStateCache.stats());
+        caches.put("verifiedTokens", jwtVerifier.stats());
+        return ResponseEntity.ok(ApiResponse.success(caches));
+    }
+}
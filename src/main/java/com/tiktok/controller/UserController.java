@@ -1,6 +1,8 @@
 package com.tiktok.controller;
 
 import com.tiktok.dto.ApiResponse;
+import com.tiktok.dto.CursorPage;
+import com.tiktok.model.DeletionJob;
 import com.tiktok.model.User;
 import com.tiktok.model.Video;
 import com.tiktok.service.UserService;
@@ -13,6 +15,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,30 +31,39 @@ public class UserController {
     private final VideoService videoService;
     
     @GetMapping
-    @Operation(summary = "Get all users", description = "Retrieve a list of all users")
-    public ResponseEntity<ApiResponse<List<User>>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
-        return ResponseEntity.ok(ApiResponse.success(users));
+    @Operation(summary = "Get all users", description = "Retrieve users newest first, paged by cursor")
+    public ResponseEntity<ApiResponse<List<User>>> getAllUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        CursorPage<User> users = userService.getUsers(cursor, size);
+        return ResponseEntity.ok(ApiResponse.page(users));
     }
     
     @GetMapping("/{id}")
     @Operation(summary = "Get user by ID", description = "Retrieve a specific user by their ID")
-    public ResponseEntity<ApiResponse<User>> getUserById(@PathVariable Long id) {
-        User user = userService.getUserById(id);
+    public ResponseEntity<ApiResponse<User>> getUserById(
+            @PathVariable Long id,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        User user = userService.markFollowedBy(userService.getUserById(id), viewerId);
         return ResponseEntity.ok(ApiResponse.success(user));
     }
     
     @GetMapping("/@{nickname}")
     @Operation(summary = "Get user by nickname", description = "Retrieve a specific user by their nickname")
-    public ResponseEntity<ApiResponse<Map<String, Object>>> getUserByNickname(@PathVariable String nickname) {
-        User user = userService.getUserByNickname(nickname);
-        List<Video> videos = videoService.getVideosByUserId(user.getId());
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getUserByNickname(
+            @PathVariable String nickname,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        User user = userService.markFollowedBy(userService.getUserByNickname(nickname), viewerId);
+        // Trang video đầu tiên, các trang sau lấy qua /api/videos/user/{userId}?cursor=
+        CursorPage<Video> videos = videoService.getVideosByUserId(user.getId(), null, size);
+        videoService.markLikedBy(videos.getItems(), viewerId);
         
         Map<String, Object> response = new HashMap<>();
         response.put("user", user);
-        response.put("videos", videos);
+        response.put("videos", videos.getItems());
         
-        return ResponseEntity.ok(ApiResponse.success(response));
+        return ResponseEntity.ok(new ApiResponse<>(true, "Success", response, videos.getNextCursor()));
     }
     
     @PostMapping
@@ -72,10 +84,33 @@ public class UserController {
     }
     
     @DeleteMapping("/{id}")
-    @Operation(summary = "Delete user", description = "Delete a user by ID")
-    public ResponseEntity<ApiResponse<Void>> deleteUser(@PathVariable Long id) {
-        userService.deleteUser(id);
-        return ResponseEntity.ok(ApiResponse.success("User deleted successfully", null));
+    @Operation(summary = "Delete user",
+            description = "Delete a user with all videos, comments, likes and follows in the background; returns 202 with the deletion job")
+    public ResponseEntity<ApiResponse<DeletionJob>> deleteUser(@PathVariable Long id) {
+        DeletionJob job = userService.deleteUser(id);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/deletions/" + job.getId()))
+                .body(ApiResponse.success("User deletion accepted", job));
+    }
+    
+    @GetMapping("/{id}/followers")
+    @Operation(summary = "Get followers", description = "Users following this user, paged by cursor")
+    public ResponseEntity<ApiResponse<List<User>>> getFollowers(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        return ResponseEntity.ok(ApiResponse.page(userService.getFollowers(id, cursor, size, viewerId)));
+    }
+    
+    @GetMapping("/{id}/following")
+    @Operation(summary = "Get following", description = "Users this user follows, paged by cursor")
+    public ResponseEntity<ApiResponse<List<User>>> getFollowing(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        return ResponseEntity.ok(ApiResponse.page(userService.getFollowing(id, cursor, size, viewerId)));
     }
     
     @PostMapping("/{userId}/follow/{targetUserId}")
@@ -98,8 +133,11 @@ public class UserController {
     
     @GetMapping("/search")
     @Operation(summary = "Search users", description = "Search users by nickname or name")
-    public ResponseEntity<ApiResponse<List<User>>> searchUsers(@RequestParam String query) {
-        List<User> users = userService.searchUsers(query);
+    public ResponseEntity<ApiResponse<List<User>>> searchUsers(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        List<User> users = userService.markFollowedBy(userService.searchUsers(query, size), viewerId);
         return ResponseEntity.ok(ApiResponse.success(users));
     }
 
@@ -1,12 +1,20 @@
 package com.tiktok.controller;
 
 import com.tiktok.dto.ApiResponse;
+import com.tiktok.dto.CursorPage;
 import com.tiktok.dto.NotificationDTO;
-import com.tiktok.dto.VideoUploadResponse;
+import com.tiktok.dto.StoredMedia;
+import com.tiktok.exception.BadRequestException;
+import com.tiktok.exception.ResourceNotFoundException;
+import com.tiktok.model.DeletionJob;
+import com.tiktok.model.UploadJob;
+import com.tiktok.model.UploadSession;
 import com.tiktok.model.User;
 import com.tiktok.model.Video;
-import com.tiktok.model.VideoMeta;
-import com.tiktok.service.CloudinaryService;
+import com.tiktok.service.MediaBlobService;
+import com.tiktok.service.ResumableUploadService;
+import com.tiktok.service.SuggestFeedService;
+import com.tiktok.service.UploadJobService;
 import com.tiktok.service.UserService;
 import com.tiktok.service.VideoService;
 import com.tiktok.service.WebSocketNotificationService;
@@ -20,7 +28,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -34,30 +45,69 @@ import java.util.Map;
 public class VideoController {
 
     private final VideoService videoService;
-    private final CloudinaryService cloudinaryService;
+    private final MediaBlobService mediaBlobService;
     private final UserService userService;
     private final WebSocketNotificationService webSocketNotificationService;
+    private final SuggestFeedService suggestFeedService;
+    private final UploadJobService uploadJobService;
+    private final ResumableUploadService resumableUploadService;
 
     @GetMapping
-    @Operation(summary = "Get all videos", description = "Retrieve a list of all videos")
-    public ResponseEntity<ApiResponse<List<Video>>> getAllVideos() {
-        List<Video> videos = videoService.getAllVideos();
-        return ResponseEntity.ok(ApiResponse.success(videos));
+    @Operation(summary = "Get all videos", description = "Retrieve videos newest first, paged by cursor")
+    public ResponseEntity<ApiResponse<List<Video>>> getAllVideos(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        CursorPage<Video> videos = videoService.getVideos(cursor, size);
+        videoService.markLikedBy(videos.getItems(), viewerId);
+        return ResponseEntity.ok(ApiResponse.page(videos));
     }
 
     @GetMapping("/suggest")
-    @Operation(summary = "Get suggested videos", description = "Get random suggested videos for feed")
+    @Operation(summary = "Get suggested videos",
+            description = "Get shuffled suggested videos for feed. Pass the returned X-Feed-Seed back to page through the same shuffle")
     public ResponseEntity<ApiResponse<List<Video>>> getSuggestVideos(
             @RequestParam(defaultValue = "1") int page,
-            @RequestParam(defaultValue = "5") int size) {
-        List<Video> videos = videoService.getSuggestVideos(page, size);
-        return ResponseEntity.ok(ApiResponse.success(videos));
+            @RequestParam(defaultValue = "5") int size,
+            @RequestParam(required = false) Long seed,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        long feedSeed = seed != null ? seed : suggestFeedService.newSeed();
+        List<Video> videos = videoService.markLikedBy(videoService.getSuggestVideos(feedSeed, page, size), viewerId);
+        return ResponseEntity.ok()
+                .header("X-Feed-Seed", String.valueOf(feedSeed))
+                .body(ApiResponse.success(videos));
+    }
+
+    @GetMapping("/trending")
+    @Operation(summary = "Get trending videos",
+            description = "Videos ranked by time-decayed engagement (views, likes, comments, shares), paged by cursor")
+    public ResponseEntity<ApiResponse<List<Video>>> getTrendingVideos(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        CursorPage<Video> videos = videoService.getTrendingVideos(cursor, size);
+        videoService.markLikedBy(videos.getItems(), viewerId);
+        return ResponseEntity.ok(ApiResponse.page(videos));
+    }
+
+    @GetMapping("/following")
+    @Operation(summary = "Get following feed",
+            description = "Latest videos from users the given user follows, paged by cursor")
+    public ResponseEntity<ApiResponse<List<Video>>> getFollowingVideos(
+            @RequestParam("user_id") Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        CursorPage<Video> videos = videoService.getFollowingVideos(userId, cursor, size);
+        videoService.markLikedBy(videos.getItems(), userId);
+        return ResponseEntity.ok(ApiResponse.page(videos));
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get video by ID", description = "Retrieve a specific video by its ID")
-    public ResponseEntity<ApiResponse<Video>> getVideoById(@PathVariable Long id) {
-        Video video = videoService.getVideoById(id);
+    public ResponseEntity<ApiResponse<Video>> getVideoById(
+            @PathVariable Long id,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        Video video = videoService.markLikedBy(videoService.getVideoById(id), viewerId);
         return ResponseEntity.ok(ApiResponse.success(video));
     }
 
@@ -79,14 +129,17 @@ public class VideoController {
     }
 
     @DeleteMapping("/{id}")
-    @Operation(summary = "Delete video", description = "Delete a video by ID")
-    public ResponseEntity<ApiResponse<Void>> deleteVideo(@PathVariable Long id) {
-        videoService.deleteVideo(id);
-        return ResponseEntity.ok(ApiResponse.success("Video deleted successfully", null));
+    @Operation(summary = "Delete video",
+            description = "Delete a video with its comments and likes in the background; returns 202 with the deletion job")
+    public ResponseEntity<ApiResponse<DeletionJob>> deleteVideo(@PathVariable Long id) {
+        DeletionJob job = videoService.deleteVideo(id);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/deletions/" + job.getId()))
+                .body(ApiResponse.success("Video deletion accepted", job));
     }
 
     @PostMapping("/{id}/like")
-    @Operation(summary = "Like/Unlike video", description = "Toggle like status for a video")
+    @Operation(summary = "Like video", description = "Like a video. Repeating the request has no further effect")
     public ResponseEntity<ApiResponse<Video>> likeVideo(
             @PathVariable Long id,
             @RequestParam("liker_id") Long likerId) { 
@@ -94,11 +147,11 @@ public class VideoController {
         // Lấy thông tin người tim
         User liker = userService.getUserById(likerId);
         
-        // Like/Unlike video
-        Video video = videoService.likeVideo(id, likerId);
+        boolean newlyLiked = videoService.likeVideo(id, likerId);
+        Video video = videoService.markLikedBy(videoService.getVideoById(id), likerId);
         
-        // Gửi notification real-time qua WebSocket nếu đã like (không phải unlike)
-        if (video.getIsLiked()) {
+        // Gửi notification real-time qua WebSocket chỉ khi là like mới
+        if (newlyLiked) {
             User videoOwner = video.getUser();
             // Chỉ gửi notification nếu không phải chính chủ video tim video của mình
             if (!videoOwner.getId().equals(likerId)) {
@@ -115,27 +168,55 @@ public class VideoController {
         return ResponseEntity.ok(ApiResponse.success(video));
     }
 
+    @DeleteMapping("/{id}/like")
+    @Operation(summary = "Unlike video", description = "Remove a like from a video. Repeating the request has no further effect")
+    public ResponseEntity<ApiResponse<Video>> unlikeVideo(
+            @PathVariable Long id,
+            @RequestParam("liker_id") Long likerId) {
+        videoService.unlikeVideo(id, likerId);
+        Video video = videoService.markLikedBy(videoService.getVideoById(id), likerId);
+        return ResponseEntity.ok(ApiResponse.success(video));
+    }
+
     @PostMapping("/{id}/view")
-    @Operation(summary = "Increment view count", description = "Increment the view count for a video")
-    public ResponseEntity<ApiResponse<Video>> incrementViewCount(@PathVariable Long id) {
-        Video video = videoService.incrementViewCount(id);
+    @Operation(summary = "Increment view count",
+            description = "Increment the view count for a video and return the updated total")
+    public ResponseEntity<ApiResponse<Map<String, Long>>> incrementViewCount(@PathVariable Long id) {
+        long viewsCount = videoService.incrementViewCount(id);
+        return ResponseEntity.ok(ApiResponse.success(Map.of("videoId", id, "viewsCount", viewsCount)));
+    }
+
+    @PostMapping("/{id}/share")
+    @Operation(summary = "Share video", description = "Increment the share count for a video")
+    public ResponseEntity<ApiResponse<Video>> shareVideo(@PathVariable Long id) {
+        Video video = videoService.shareVideo(id);
         return ResponseEntity.ok(ApiResponse.success(video));
     }
 
     @GetMapping("/search")
     @Operation(summary = "Search videos", description = "Search videos by description or music")
-    public ResponseEntity<ApiResponse<List<Video>>> searchVideos(@RequestParam String query) {
-        List<Video> videos = videoService.searchVideos(query);
-        return ResponseEntity.ok(ApiResponse.success(videos));
+    public ResponseEntity<ApiResponse<List<Video>>> searchVideos(
+            @RequestParam String query,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        CursorPage<Video> videos = videoService.searchVideos(query, cursor, size);
+        videoService.markLikedBy(videos.getItems(), viewerId);
+        return ResponseEntity.ok(ApiResponse.page(videos));
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<ApiResponse<List<Video>>> getVideosByUser(@PathVariable Long userId) {
-        List<Video> videos = videoService.getVideosByUserId(userId);
-        return ResponseEntity.ok(ApiResponse.success(videos));
+    public ResponseEntity<ApiResponse<List<Video>>> getVideosByUser(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(name = "viewer_id", required = false) Long viewerId) {
+        CursorPage<Video> videos = videoService.getVideosByUserId(userId, cursor, size);
+        videoService.markLikedBy(videos.getItems(), viewerId);
+        return ResponseEntity.ok(ApiResponse.page(videos));
     }
 
-    /*** Upload video */
+    /*** Upload video: spool file xuống đĩa, trả 202 + job id, worker upload và tạo video sau */
     @PostMapping(value = "", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> uploadVideo(
             @RequestParam("file") MultipartFile file,
@@ -152,66 +233,24 @@ public class VideoController {
                         "message", "File size must be less than 100MB"));
             }
 
-            // Lấy user từ DB (user_id)
-            User user = userService.getUserById(userId);
-
-            // Upload lên Cloudinary
-            Map<String, Object> uploadResult = cloudinaryService.uploadVideo(file);
-
-            // Build meta (file_format, mime_type, resolution_x, resolution_y)
-            VideoMeta.VideoResolution resolution = new VideoMeta.VideoResolution(
-                    (Integer) uploadResult.get("width"),
-                    (Integer) uploadResult.get("height"));
-
-            VideoMeta meta = new VideoMeta();
-            meta.setFileFormat((String) uploadResult.get("format"));
-            meta.setMimeType(file.getContentType());
-            meta.setVideo(resolution);
-
-            // Tạo entity Video để lưu DB
-            Video video = new Video();
-            video.setUser(user);
-            video.setType(type);
-            video.setThumbUrl((String) uploadResult.get("url")); // thumb_url
-            video.setFileUrl((String) uploadResult.get("secure_url")); // file_url
-            video.setDescription(description);
-            video.setMusic(music);
-            video.setViewable(viewable);
-            video.setMeta(meta);
-            // is_liked, likes_count, comments_count, shares_count, views_count,
-            // published_at,
-            // created_at, updated_at sẽ dùng default + @PrePersist/@CreatedDate
-
-            // Lưu vào DB
-            Video savedVideo = videoService.createVideo(video);
-
-            // Tạo response upload (giữ nguyên DTO cũ)
-            VideoUploadResponse uploadResponse = VideoUploadResponse.builder()
-                    .fileUrl((String) uploadResult.get("secure_url"))
-                    .thumbUrl((String) uploadResult.get("url"))
-                    .publicId((String) uploadResult.get("public_id"))
-                    .format((String) uploadResult.get("format"))
-                    .duration(((Number) uploadResult.get("duration")).longValue())
-                    .bytes(((Number) uploadResult.get("bytes")).longValue())
-                    .width((Integer) uploadResult.get("width"))
-                    .height((Integer) uploadResult.get("height"))
-                    .resourceType((String) uploadResult.get("resource_type"))
-                    .build();
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("upload", uploadResponse);
-            data.put("video", savedVideo); 
+            UploadJob job = uploadJobService.submit(file, userId, description, music, viewable, type);
 
-            return ResponseEntity.ok(Map.of(
-                    "success", true,
-                    "message", "Video uploaded and saved successfully",
-                    "data", data));
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/videos/uploads/" + job.getId()))
+                    .body(Map.of(
+                            "success", true,
+                            "message", "Video upload accepted",
+                            "data", job));
 
         } catch (IllegalArgumentException e) {
             log.error("Invalid file: {}", e.getMessage());
             return ResponseEntity.badRequest().body(Map.of(
                     "success", false,
                     "message", e.getMessage()));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "success", false,
+                    "message", e.getMessage()));
         } catch (Exception e) {
             log.error("Error uploading video: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
@@ -220,6 +259,64 @@ public class VideoController {
         }
     }
 
+    @GetMapping("/uploads/{jobId}")
+    @Operation(summary = "Get upload job status",
+            description = "Progress and result (video_id) of an asynchronous video upload")
+    public ResponseEntity<ApiResponse<UploadJob>> getUploadJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(ApiResponse.success(uploadJobService.getJob(jobId)));
+    }
+
+    @PostMapping("/uploads/sessions")
+    @Operation(summary = "Start resumable upload",
+            description = "Create an upload session; send the file with PUT chunks and finish with /complete")
+    public ResponseEntity<ApiResponse<UploadSession>> initiateUpload(
+            @RequestParam("user_id") Long userId,
+            @RequestParam("file_size") long fileSize,
+            @RequestParam("content_type") String contentType,
+            @RequestParam(value = "description", required = false) String description,
+            @RequestParam(value = "music", required = false) String music,
+            @RequestParam(value = "viewable", defaultValue = "public") String viewable,
+            @RequestParam(value = "type", defaultValue = "video") String type) throws IOException {
+        UploadSession session = resumableUploadService.initiate(
+                userId, fileSize, contentType, description, music, viewable, type);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Upload session created", session));
+    }
+
+    @PutMapping("/uploads/sessions/{sessionId}")
+    @Operation(summary = "Upload chunk",
+            description = "Write the raw request body at the given byte offset. Returns the received ranges")
+    public ResponseEntity<ApiResponse<UploadSession>> uploadChunk(
+            @PathVariable String sessionId,
+            @RequestParam("user_id") Long userId,
+            @RequestParam long offset,
+            HttpServletRequest request) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length <= 0) {
+            throw new BadRequestException("Content-Length is required");
+        }
+        UploadSession session = resumableUploadService.writeChunk(
+                sessionId, userId, offset, length, request.getInputStream());
+        return ResponseEntity.ok(ApiResponse.success(session));
+    }
+
+    @GetMapping("/uploads/sessions/{sessionId}")
+    @Operation(summary = "Get upload session", description = "Byte ranges received so far, to resume an interrupted upload")
+    public ResponseEntity<ApiResponse<UploadSession>> getUploadSession(@PathVariable String sessionId) {
+        return ResponseEntity.ok(ApiResponse.success(resumableUploadService.getSession(sessionId)));
+    }
+
+    @PostMapping("/uploads/sessions/{sessionId}/complete")
+    @Operation(summary = "Complete resumable upload", description = "Hand the received file to the upload job pipeline")
+    public ResponseEntity<ApiResponse<UploadJob>> completeUpload(
+            @PathVariable String sessionId,
+            @RequestParam("user_id") Long userId) {
+        UploadJob job = resumableUploadService.complete(sessionId, userId);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/videos/uploads/" + job.getId()))
+                .body(ApiResponse.success("Video upload accepted", job));
+    }
+
     /*** Upload image/thumbnail */
     @PostMapping(value = "/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> uploadImage(@RequestParam("file") MultipartFile file) {
@@ -230,14 +327,14 @@ public class VideoController {
                         "message", "Image size must be less than 10MB"));
             }
 
-            Map<String, Object> uploadResult = cloudinaryService.uploadImage(file);
+            StoredMedia uploaded = mediaBlobService.storeImage(file);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("url", uploadResult.get("secure_url"));
-            response.put("publicId", uploadResult.get("public_id"));
-            response.put("format", uploadResult.get("format"));
-            response.put("width", uploadResult.get("width"));
-            response.put("height", uploadResult.get("height"));
+            response.put("url", uploaded.getFileUrl());
+            response.put("publicId", uploaded.getPublicId());
+            response.put("format", uploaded.getFormat());
+            response.put("width", uploaded.getWidth());
+            response.put("height", uploaded.getHeight());
 
             return ResponseEntity.ok(Map.of(
                     "success", true,
@@ -252,18 +349,18 @@ public class VideoController {
         }
     }
 
-    /*** Xóa file */
+    /*** Xóa file (bất đồng bộ qua outbox, trả 202) */
     @DeleteMapping("/{resourceType}/{publicId}")
     public ResponseEntity<?> deleteFile(
             @PathVariable String resourceType,
             @PathVariable String publicId) {
         try {
-            Map<String, Object> result = cloudinaryService.deleteFile(publicId, resourceType);
+            mediaBlobService.release(publicId, resourceType);
 
-            return ResponseEntity.ok(Map.of(
+            return ResponseEntity.accepted().body(Map.of(
                     "success", true,
-                    "message", "File deleted successfully",
-                    "data", result));
+                    "message", "File deletion accepted",
+                    "data", Map.of("publicId", publicId, "resourceType", resourceType)));
 
         } catch (Exception e) {
             log.error("Error deleting file: {}", e.getMessage());
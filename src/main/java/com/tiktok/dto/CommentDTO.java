@@ -0,0 +1,33 @@
+package com.tiktok.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentDTO {
+    private Long id;
+    private UserSimpleDTO user;
+    private String content;
+    private Integer likesCount;
+    private Integer repliesCount;
+    private LocalDateTime createdAt;
+    private Boolean isLiked = false;
+    private List<CommentDTO> replies = new ArrayList<>();
+    private String repliesCursor; // null nếu replies đã đủ
+
+    /**
+     * Bản sao để gắn isLiked theo từng viewer mà không sửa bản đang nằm trong cache
+     */
+    public CommentDTO copy() {
+        List<CommentDTO> replyCopies = new ArrayList<>(replies.size());
+        replies.forEach(reply -> replyCopies.add(reply.copy()));
+        return new CommentDTO(id, user, content, likesCount, repliesCount, createdAt, isLiked, replyCopies, repliesCursor);
+    }
+}
@@ -5,18 +5,21 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * Kết quả upload lên MediaStorage (không phụ thuộc backend)
+ */
 @Data
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class VideoUploadResponse {
+public class StoredMedia {
+    private String publicId;
     private String fileUrl;
     private String thumbUrl;
-    private String publicId;
     private String format;
-    private Long duration; // seconds
-    private Long bytes;
+    private String resourceType;
     private Integer width;
     private Integer height;
-    private String resourceType;
-}
\ No newline at end of file
+    private Double duration; // seconds
+    private Long bytes;
+}
@@ -0,0 +1,16 @@
+package com.tiktok.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một gợi ý autocomplete: text để hiển thị và loại (user, music, term)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+    private String text;
+    private String type;
+}
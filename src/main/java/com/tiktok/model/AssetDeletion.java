@@ -0,0 +1,63 @@
+package com.tiktok.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Outbox xóa asset trên MediaStorage. Được ghi cùng transaction với việc xóa video/user,
+ * AssetCleanupService xóa asset theo batch ở background, lỗi thì retry, quá maxAttempts thì DEAD.
+ */
+@Entity
+@Table(name = "asset_deletions", indexes = {
+        @Index(name = "idx_asset_deletions_status_next_attempt", columnList = "status, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AssetDeletion {
+
+    public static final String PENDING = "PENDING";
+    public static final String DEAD = "DEAD";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "public_id", nullable = false)
+    private String publicId;
+
+    @Column(name = "resource_type", nullable = false, length = 16)
+    private String resourceType;
+
+    @Column(nullable = false, length = 20)
+    private String status = PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    public AssetDeletion(String publicId, String resourceType) {
+        this.publicId = publicId;
+        this.resourceType = resourceType;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
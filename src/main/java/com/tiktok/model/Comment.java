@@ -14,7 +14,12 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "comments")
+@Table(name = "comments", indexes = {
+        @Index(name = "idx_comments_video_parent_created_id", columnList = "video_id, parent_comment_id, created_at, id"),
+        @Index(name = "idx_comments_parent_created_id", columnList = "parent_comment_id, created_at, id"),
+        @Index(name = "idx_comments_video_parent_likes", columnList = "video_id, parent_comment_id, likes_count"),
+        @Index(name = "idx_comments_video_parent_replies", columnList = "video_id, parent_comment_id, replies_count")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -33,16 +38,21 @@ public class Comment {
     private Video video;
 
     // ✅ User cần cho FE (có thể ignore field nhạy cảm trong User)
-    @ManyToOne(fetch = FetchType.EAGER)
+    // LAZY: query danh sách JOIN FETCH hoặc batch-fetch (User có @BatchSize), tránh N+1
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
     @Column(columnDefinition = "TEXT", nullable = false)
     private String content;
 
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer likesCount = 0;
 
+    // Số reply trực tiếp, cập nhật qua CounterService
+    @Column(nullable = false, updatable = false)
+    private Integer repliesCount = 0;
+
     // ❌ Tránh vòng lặp reply → parent
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_comment_id")
@@ -60,4 +70,8 @@ public class Comment {
 
     @Transient
     private List<Comment> replies = new ArrayList<>();
+
+    // Cursor để tải thêm replies của thread, null nếu replies đã đủ
+    @Transient
+    private String repliesCursor;
 }
@@ -0,0 +1,31 @@
+package com.tiktok.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "comment_likes",
+        uniqueConstraints = @UniqueConstraint(name = "uk_comment_likes_user_comment", columnNames = {"user_id", "comment_id"}),
+        indexes = @Index(name = "idx_comment_likes_comment", columnList = "comment_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentLike {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "comment_id", nullable = false)
+    private Long commentId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,91 @@
+package com.tiktok.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Job xóa hàng loạt một comment (cả thread), một video hoặc một user cùng toàn bộ nội dung.
+ * ContentDeletionService xóa theo chunk ở background; mỗi bước idempotent nên retry hoặc
+ * worker khác claim lại job thì chạy tiếp từ phần còn lại.
+ */
+@Entity
+@Table(name = "deletion_jobs", indexes = {
+        @Index(name = "idx_deletion_jobs_status_next_attempt", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_deletion_jobs_target", columnList = "target_type, target_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeletionJob {
+
+    public static final String COMMENT = "COMMENT";
+    public static final String VIDEO = "VIDEO";
+    public static final String USER = "USER";
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "target_type", nullable = false, length = 16)
+    private String targetType;
+
+    @Column(name = "target_id", nullable = false)
+    private Long targetId;
+
+    @Column(nullable = false, length = 20)
+    private String status = PENDING;
+
+    // Tổng số row đã xóa qua các chunk
+    @Column(name = "deleted_rows", nullable = false)
+    private Long deletedRows = 0L;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @JsonIgnore
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Worker đang giữ job đến thời điểm này, được gia hạn sau mỗi chunk
+    @JsonIgnore
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public DeletionJob(String targetType, Long targetId) {
+        this.targetType = targetType;
+        this.targetId = targetId;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
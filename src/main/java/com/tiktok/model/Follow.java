@@ -0,0 +1,31 @@
+package com.tiktok.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "follows",
+        uniqueConstraints = @UniqueConstraint(name = "uk_follows_follower_followee", columnNames = {"follower_id", "followee_id"}),
+        indexes = @Index(name = "idx_follows_followee_follower", columnList = "followee_id, follower_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Follow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "follower_id", nullable = false)
+    private Long followerId;
+
+    @Column(name = "followee_id", nullable = false)
+    private Long followeeId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
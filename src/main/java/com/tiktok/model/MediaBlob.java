@@ -0,0 +1,66 @@
+package com.tiktok.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Một asset trên MediaStorage, định danh bằng sha256 nội dung. Upload trùng nội dung
+ * dùng lại asset và tăng refCount; asset chỉ bị xóa khi tham chiếu cuối cùng được release.
+ */
+@Entity
+@Table(name = "media_blobs", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_media_blobs_sha256_type", columnNames = {"sha256", "resource_type"})
+}, indexes = {
+        @Index(name = "idx_media_blobs_public_id", columnList = "public_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "resource_type", nullable = false, length = 16)
+    private String resourceType;
+
+    @Column(name = "public_id", nullable = false)
+    private String publicId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String fileUrl;
+
+    @Column(columnDefinition = "TEXT")
+    private String thumbUrl;
+
+    private String format;
+
+    private String mimeType;
+
+    private Integer width;
+
+    private Integer height;
+
+    private Double duration;
+
+    private Long bytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount = 1;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,125 @@
+package com.tiktok.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Job upload video bất đồng bộ: file đã được spool xuống đĩa, worker upload lên
+ * storage rồi tạo Video. Job bị lỗi được retry với backoff cho đến maxAttempts.
+ */
+@Entity
+@Table(name = "upload_jobs", indexes = {
+        @Index(name = "idx_upload_jobs_status_next_attempt", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_upload_jobs_node_status", columnList = "node_id, status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String SUCCEEDED = "SUCCEEDED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 20)
+    private String status = PENDING;
+
+    // Phần trăm đã upload lên storage
+    @Column(nullable = false)
+    private Integer progress = 0;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @JsonIgnore
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Node đã spool file (upload.node-id); file nằm trên đĩa local nên chỉ node này upload được
+    @JsonIgnore
+    @Column(name = "node_id", nullable = false, length = 64)
+    private String nodeId;
+
+    // Worker đang giữ job đến thời điểm này; quá hạn thì coi như worker đã chết
+    @JsonIgnore
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @JsonIgnore
+    @Column(name = "file_path", columnDefinition = "TEXT", nullable = false)
+    private String filePath;
+
+    private String contentType;
+
+    private Long fileSize;
+
+    @Column(columnDefinition = "TEXT")
+    private String description;
+
+    @Column(columnDefinition = "TEXT")
+    private String music;
+
+    private String viewable;
+
+    private String type;
+
+    // Kết quả upload lên storage, giữ lại để lần retry sau không phải upload lại
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String fileUrl;
+
+    @JsonIgnore
+    @Column(columnDefinition = "TEXT")
+    private String thumbUrl;
+
+    @JsonIgnore
+    private String publicId;
+
+    @JsonIgnore
+    private String fileFormat;
+
+    @JsonIgnore
+    private Integer width;
+
+    @JsonIgnore
+    private Integer height;
+
+    @Column(name = "video_id")
+    private Long videoId;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
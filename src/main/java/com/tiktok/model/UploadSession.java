@@ -0,0 +1,89 @@
+package com.tiktok.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.tiktok.util.ByteRanges;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Phiên upload resumable: client PUT từng chunk theo offset vào file đã preallocate,
+ * hỏi lại các khoảng đã nhận khi mất kết nối, rồi complete để chuyển sang UploadJob.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_sessions_status_expires", columnList = "status, expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    public static final String OPEN = "OPEN";
+    public static final String COMPLETED = "COMPLETED";
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 20)
+    private String status = OPEN;
+
+    @Column(nullable = false)
+    private Long fileSize;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @JsonIgnore
+    @Column(name = "file_path", columnDefinition = "TEXT", nullable = false)
+    private String filePath;
+
+    // Các khoảng byte đã nhận, xem ByteRanges
+    @JsonIgnore
+    @Column(name = "received_ranges", columnDefinition = "TEXT")
+    private String rangesData = "";
+
+    @Column(columnDefinition = "TEXT")
+    private String description;
+
+    @Column(columnDefinition = "TEXT")
+    private String music;
+
+    private String viewable;
+
+    private String type;
+
+    // Job upload được tạo khi complete
+    @Column(name = "job_id", length = 36)
+    private String jobId;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @JsonProperty("receivedRanges")
+    public List<long[]> getReceivedRanges() {
+        return ByteRanges.parse(rangesData);
+    }
+
+    @JsonProperty("receivedBytes")
+    public long getReceivedBytes() {
+        return ByteRanges.total(getReceivedRanges());
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
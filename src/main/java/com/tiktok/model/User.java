@@ -1,9 +1,11 @@
 package com.tiktok.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -14,11 +16,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_created_at_id", columnList = "created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @EntityListeners(AuditingEntityListener.class)
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@BatchSize(size = 100) // Tác giả của một trang comment/reply được load bằng một query IN
 public class User {
     
     @Id
@@ -50,13 +56,14 @@ public class User {
     @Column(nullable = false)
     private Boolean tick = false;
     
-    @Column(nullable = false)
+    // Counter chỉ đổi qua UPDATE cộng delta (CounterService), save() của entity không ghi đè
+    @Column(nullable = false, updatable = false)
     private Integer followingsCount = 0;
     
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer followersCount = 0;
     
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer likesCount = 0;
     
     private String websiteUrl;
@@ -65,7 +72,17 @@ public class User {
     private String twitterUrl;
     private String instagramUrl;
     
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
+    // Tăng khi thu hồi toàn bộ token của user, so với claim "ver" của access token.
+    // Chỉ đổi qua UserRepository nên không bị save() của entity ghi đè.
+    @JsonIgnore
+    @Column(nullable = false, updatable = false)
+    private Integer tokenVersion = 0;
+    
+    @JsonIgnore
+    @Column(nullable = false, updatable = false)
+    private Boolean disabled = false;
+    
+    @OneToMany(mappedBy = "user")
     @JsonIgnore
     private List<Video> videos = new ArrayList<>();
     
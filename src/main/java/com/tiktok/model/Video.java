@@ -1,5 +1,6 @@
 package com.tiktok.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -14,7 +15,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "videos")
+@Table(name = "videos", indexes = {
+        @Index(name = "idx_videos_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_videos_user_viewable_created_at_id", columnList = "user_id, viewable, created_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -40,6 +44,11 @@ public class Video {
     
     @Column(columnDefinition = "TEXT", nullable = false)
     private String fileUrl;
+
+    // Asset trên MediaStorage (media_blobs.public_id), null với video tạo trực tiếp từ URL
+    @JsonIgnore
+    @Column(name = "public_id")
+    private String publicId;
     
     @Column(columnDefinition = "TEXT")
     private String description;
@@ -47,20 +56,33 @@ public class Video {
     @Column(columnDefinition = "TEXT")
     private String music;
     
-    @Column(nullable = false)
+    // Cột cũ (cờ like toàn cục), chỉ còn map để insert không vi phạm NOT NULL trên schema hiện có
+    @JsonIgnore
+    @Column(name = "is_liked", nullable = false)
+    private Boolean legacyIsLiked = false;
+    
+    // Viewer hiện tại đã like video chưa, lấy từ video_likes (xem VideoService.markLikedBy)
+    @Transient
     private Boolean isLiked = false;
     
-    @Column(nullable = false)
+    // Counter chỉ đổi qua UPDATE cộng delta (CounterService/ViewCountService), save() của entity
+    // không được ghi đè giá trị đã load
+    @Column(nullable = false, updatable = false)
     private Integer likesCount = 0;
     
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer commentsCount = 0;
     
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer sharesCount = 0;
     
-    @Column(nullable = false)
+    @Column(nullable = false, updatable = false)
     private Integer viewsCount = 0;
+
+    // Số view đã ghi nhận nhưng chưa flush xuống DB (xem ViewCountService)
+    @Transient
+    @JsonIgnore
+    private long pendingViews;
     
     @Column(nullable = false)
     private String viewable = "public";
@@ -83,6 +105,10 @@ public class Video {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
     
+    public Integer getViewsCount() {
+        return viewsCount == null ? null : (int) Math.min(Integer.MAX_VALUE, viewsCount + pendingViews);
+    }
+
     @PrePersist
     protected void onCreate() {
         if (publishedAt == null) {
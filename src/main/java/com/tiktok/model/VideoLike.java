@@ -0,0 +1,31 @@
+package com.tiktok.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "video_likes",
+        uniqueConstraints = @UniqueConstraint(name = "uk_video_likes_user_video", columnNames = {"user_id", "video_id"}),
+        indexes = @Index(name = "idx_video_likes_video", columnList = "video_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VideoLike {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "video_id", nullable = false)
+    private Long videoId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,19 @@
+package com.tiktok.repository;
+
+import com.tiktok.model.AssetDeletion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AssetDeletionRepository extends JpaRepository<AssetDeletion, Long> {
+
+    @Query("SELECT d FROM AssetDeletion d WHERE d.status = 'PENDING' AND d.nextAttemptAt <= :now " +
+           "ORDER BY d.nextAttemptAt, d.id")
+    List<AssetDeletion> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+}
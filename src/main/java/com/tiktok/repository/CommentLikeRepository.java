@@ -0,0 +1,45 @@
+package com.tiktok.repository;
+
+import com.tiktok.model.CommentLike;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CommentLikeRepository extends JpaRepository<CommentLike, Long> {
+
+    // Trả về 1 nếu like mới được tạo, 0 nếu đã like từ trước (unique user_id, comment_id)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO comment_likes (user_id, comment_id, created_at) " +
+                   "VALUES (:userId, :commentId, NOW())", nativeQuery = true)
+    int insertIgnore(@Param("userId") Long userId, @Param("commentId") Long commentId);
+
+    @Modifying
+    @Query("DELETE FROM CommentLike l WHERE l.userId = :userId AND l.commentId = :commentId")
+    int deleteLike(@Param("userId") Long userId, @Param("commentId") Long commentId);
+
+    @Query("SELECT l.commentId FROM CommentLike l WHERE l.userId = :userId AND l.commentId IN :commentIds")
+    List<Long> findLikedCommentIds(@Param("userId") Long userId, @Param("commentIds") Collection<Long> commentIds);
+
+    // Một chunk like của các comment sắp bị xóa
+    @Query("SELECT l.id FROM CommentLike l WHERE l.commentId IN :commentIds")
+    List<Long> findIdChunkByCommentIdIn(@Param("commentIds") Collection<Long> commentIds, Pageable pageable);
+
+    // Một chunk like trên comment của các video sắp bị xóa
+    @Query("SELECT l.id FROM CommentLike l, Comment c WHERE c.id = l.commentId AND c.video.id IN :videoIds")
+    List<Long> findIdChunkByVideoIdIn(@Param("videoIds") Collection<Long> videoIds, Pageable pageable);
+
+    // Một chunk like user đã tim vào comment
+    @Query("SELECT l FROM CommentLike l WHERE l.userId = :userId")
+    List<CommentLike> findChunkByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM CommentLike l WHERE l.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -1,23 +1,172 @@
 package com.tiktok.repository;
 
 import com.tiktok.model.Comment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     
-    // Lấy tất cả comment gốc (không phải reply) của video, sắp xếp theo thời gian mới nhất
-    List<Comment> findByVideoIdAndParentCommentIsNullOrderByCreatedAtDesc(Long videoId);
+    // Thông tin một comment cần cho like/unlike và ranking top comment
+    interface CommentRef {
+        Long getId();
+        Long getVideoId();
+        Long getParentId();
+        LocalDateTime getCreatedAt();
+        Integer getLikesCount();
+        Integer getRepliesCount();
+    }
     
-    // Lấy tất cả replies của một comment
-    List<Comment> findByParentCommentIdOrderByCreatedAtAsc(Long parentCommentId);
+    // Vị trí của comment trong cây, dùng khi xóa hàng loạt
+    interface CommentNode {
+        Long getId();
+        Long getVideoId();
+        Long getParentId();
+    }
     
+    // Trang comment gốc (không phải reply) của video, mới nhất trước, kèm tác giả
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.video.id = :videoId AND c.parentComment IS NULL " +
+           "ORDER BY c.createdAt DESC, c.id DESC")
+    List<Comment> findRootPage(@Param("videoId") Long videoId, Pageable pageable);
+
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.video.id = :videoId AND c.parentComment IS NULL " +
+           "AND (c.createdAt < :createdAt OR (c.createdAt = :createdAt AND c.id < :id)) " +
+           "ORDER BY c.createdAt DESC, c.id DESC")
+    List<Comment> findRootPageBefore(
+            @Param("videoId") Long videoId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    // Tối đa perThread reply đầu tiên (cũ nhất trước) của mỗi comment gốc, một query cho cả trang
+    @Query(value = "SELECT * FROM (" +
+                   "SELECT c.*, ROW_NUMBER() OVER (PARTITION BY c.parent_comment_id ORDER BY c.created_at, c.id) AS rn " +
+                   "FROM comments c WHERE c.parent_comment_id IN (:parentIds)) t " +
+                   "WHERE t.rn <= :perThread ORDER BY t.parent_comment_id, t.created_at, t.id",
+           nativeQuery = true)
+    List<Comment> findFirstRepliesByParentIds(
+            @Param("parentIds") Collection<Long> parentIds,
+            @Param("perThread") int perThread);
+
+    // Trang replies của một thread, cũ nhất trước
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.parentComment.id = :parentId " +
+           "ORDER BY c.createdAt, c.id")
+    List<Comment> findReplyPage(@Param("parentId") Long parentId, Pageable pageable);
+
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.parentComment.id = :parentId " +
+           "AND (c.createdAt > :createdAt OR (c.createdAt = :createdAt AND c.id > :id)) " +
+           "ORDER BY c.createdAt, c.id")
+    List<Comment> findReplyPageAfter(
+            @Param("parentId") Long parentId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
+    
+    @Query("SELECT c.id AS id, c.video.id AS videoId, p.id AS parentId, c.createdAt AS createdAt, " +
+           "c.likesCount AS likesCount, c.repliesCount AS repliesCount " +
+           "FROM Comment c LEFT JOIN c.parentComment p WHERE c.id = :id")
+    Optional<CommentRef> findRefById(@Param("id") Long id);
+
+    @Query("SELECT c.id AS id, c.video.id AS videoId, p.id AS parentId, c.createdAt AS createdAt, " +
+           "c.likesCount AS likesCount, c.repliesCount AS repliesCount " +
+           "FROM Comment c LEFT JOIN c.parentComment p WHERE c.id IN :ids")
+    List<CommentRef> findRefsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Ứng viên top comment của video: mỗi query đọc tối đa limit dòng theo index, không quét cả video
+    @Query("SELECT c.id AS id, c.video.id AS videoId, c.createdAt AS createdAt, " +
+           "c.likesCount AS likesCount, c.repliesCount AS repliesCount " +
+           "FROM Comment c WHERE c.video.id = :videoId AND c.parentComment IS NULL ORDER BY c.likesCount DESC")
+    List<CommentRef> findMostLikedRoots(@Param("videoId") Long videoId, Pageable pageable);
+
+    @Query("SELECT c.id AS id, c.video.id AS videoId, c.createdAt AS createdAt, " +
+           "c.likesCount AS likesCount, c.repliesCount AS repliesCount " +
+           "FROM Comment c WHERE c.video.id = :videoId AND c.parentComment IS NULL ORDER BY c.repliesCount DESC")
+    List<CommentRef> findMostRepliedRoots(@Param("videoId") Long videoId, Pageable pageable);
+
+    @Query("SELECT c.id AS id, c.video.id AS videoId, c.createdAt AS createdAt, " +
+           "c.likesCount AS likesCount, c.repliesCount AS repliesCount " +
+           "FROM Comment c WHERE c.video.id = :videoId AND c.parentComment IS NULL " +
+           "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CommentRef> findNewestRoots(@Param("videoId") Long videoId, Pageable pageable);
+
+    // Phần top comment sau ranking in-memory: keyset theo (likesCount, id) giảm dần, đi theo
+    // idx_comments_video_parent_likes (InnoDB tự kèm id trong index phụ)
+    @Query("SELECT c.id AS id, c.video.id AS videoId, c.createdAt AS createdAt, " +
+           "c.likesCount AS likesCount, c.repliesCount AS repliesCount " +
+           "FROM Comment c WHERE c.video.id = :videoId AND c.parentComment IS NULL " +
+           "AND c.id NOT IN :excludedIds " +
+           "AND (c.likesCount < :likes OR (c.likesCount = :likes AND c.id < :id)) " +
+           "ORDER BY c.likesCount DESC, c.id DESC")
+    List<CommentRef> findMostLikedRootsAfter(
+            @Param("videoId") Long videoId,
+            @Param("excludedIds") Collection<Long> excludedIds,
+            @Param("likes") int likes,
+            @Param("id") long id,
+            Pageable pageable);
+
+    @Query("SELECT c FROM Comment c JOIN FETCH c.user WHERE c.id IN :ids")
+    List<Comment> findAllWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Cộng/trừ trực tiếp trong DB, không read-modify-write
+    @Modifying
+    @Query("UPDATE Comment c SET c.likesCount = " +
+           "CASE WHEN c.likesCount + :delta < 0 THEN 0 ELSE c.likesCount + :delta END WHERE c.id = :id")
+    int addLikesCount(@Param("id") Long id, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE Comment c SET c.repliesCount = " +
+           "CASE WHEN c.repliesCount + :delta < 0 THEN 0 ELSE c.repliesCount + :delta END WHERE c.id = :id")
+    int addRepliesCount(@Param("id") Long id, @Param("delta") int delta);
+
+    @Query("SELECT MIN(c.id), MAX(c.id) FROM Comment c")
+    List<Object[]> findIdRange();
+
+    // Tính lại likes_count (từ comment_likes) và replies_count cho một khoảng id,
+    // bỏ qua các row đang có delta chờ flush. Derived table được materialize nên đọc được chính bảng comments.
+    @Modifying
+    @Query(value = "UPDATE comments c LEFT JOIN (SELECT parent_comment_id, COUNT(*) AS cnt FROM comments " +
+                   "WHERE parent_comment_id BETWEEN :fromId AND :toId GROUP BY parent_comment_id) r " +
+                   "ON r.parent_comment_id = c.id SET " +
+                   "c.likes_count = (SELECT COUNT(*) FROM comment_likes l WHERE l.comment_id = c.id), " +
+                   "c.replies_count = COALESCE(r.cnt, 0) " +
+                   "WHERE c.id BETWEEN :fromId AND :toId AND c.id NOT IN (:excludedIds)",
+           nativeQuery = true)
+    int reconcileCounts(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                        @Param("excludedIds") Collection<Long> excludedIds);
+
+    @Query("SELECT c.id AS id, c.video.id AS videoId, p.id AS parentId " +
+           "FROM Comment c LEFT JOIN c.parentComment p WHERE c.id IN :ids")
+    List<CommentNode> findNodesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Reply trực tiếp của các comment, dùng index idx_comments_parent_created_id
+    @Query("SELECT c.id AS id, c.video.id AS videoId, c.parentComment.id AS parentId " +
+           "FROM Comment c WHERE c.parentComment.id IN :parentIds")
+    List<CommentNode> findChildNodes(@Param("parentIds") Collection<Long> parentIds);
+
+    @Query("SELECT c.id FROM Comment c WHERE c.user.id = :userId ORDER BY c.id DESC")
+    List<Long> findIdChunkByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    // Comment của các video sắp bị xóa, id lớn trước nên reply luôn đứng trước comment cha
+    @Query("SELECT c.id FROM Comment c WHERE c.video.id IN :videoIds ORDER BY c.id DESC")
+    List<Long> findIdChunkByVideoIdIn(@Param("videoIds") Collection<Long> videoIds, Pageable pageable);
+
+    // Reply có id lớn hơn comment cha, xóa id giảm dần để FK parent_comment_id không chặn giữa chừng
+    @Modifying
+    @Query(value = "DELETE FROM comments WHERE id IN (:ids) ORDER BY id DESC", nativeQuery = true)
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
     // Đếm số comment của video (bao gồm cả replies)
     Long countByVideoId(Long videoId);
     
     // Đếm số replies của một comment
     Long countByParentCommentId(Long parentCommentId);
-}
\ No newline at end of file
+}
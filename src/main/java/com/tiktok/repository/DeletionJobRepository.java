@@ -0,0 +1,46 @@
+package com.tiktok.repository;
+
+import com.tiktok.model.DeletionJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DeletionJobRepository extends JpaRepository<DeletionJob, Long> {
+
+    // Job đến hạn chạy: PENDING tới giờ retry, hoặc RUNNING nhưng lease đã hết (worker chết)
+    @Query("SELECT j.id FROM DeletionJob j WHERE " +
+           "(j.status = 'PENDING' AND j.nextAttemptAt <= :now) OR " +
+           "(j.status = 'RUNNING' AND j.leaseUntil < :now) " +
+           "ORDER BY j.nextAttemptAt")
+    List<Long> findDueJobIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    Optional<DeletionJob> findFirstByTargetTypeAndTargetIdAndStatusIn(
+            String targetType, Long targetId, Collection<String> statuses);
+
+    // Claim job bằng một UPDATE có điều kiện, chỉ một worker (kể cả khác node) claim được
+    @Transactional
+    @Modifying
+    @Query("UPDATE DeletionJob j SET j.status = 'RUNNING', j.leaseUntil = :leaseUntil, " +
+           "j.attempts = j.attempts + 1, j.updatedAt = :now WHERE j.id = :id AND " +
+           "((j.status = 'PENDING' AND j.nextAttemptAt <= :now) OR " +
+           "(j.status = 'RUNNING' AND j.leaseUntil < :now))")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // Ghi tiến độ và gia hạn lease sau mỗi chunk
+    @Transactional
+    @Modifying
+    @Query("UPDATE DeletionJob j SET j.deletedRows = :deletedRows, j.leaseUntil = :leaseUntil, " +
+           "j.updatedAt = :now WHERE j.id = :id")
+    int updateProgress(@Param("id") Long id, @Param("deletedRows") long deletedRows,
+                       @Param("leaseUntil") LocalDateTime leaseUntil, @Param("now") LocalDateTime now);
+}
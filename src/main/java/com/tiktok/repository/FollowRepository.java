@@ -0,0 +1,58 @@
+package com.tiktok.repository;
+
+import com.tiktok.model.Follow;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FollowRepository extends JpaRepository<Follow, Long> {
+
+    // Trả về 1 nếu follow mới được tạo, 0 nếu đã follow từ trước
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO follows (follower_id, followee_id, created_at) " +
+                   "VALUES (:followerId, :followeeId, NOW())", nativeQuery = true)
+    int insertIgnore(@Param("followerId") Long followerId, @Param("followeeId") Long followeeId);
+
+    @Modifying
+    @Query("DELETE FROM Follow f WHERE f.followerId = :followerId AND f.followeeId = :followeeId")
+    int deleteFollow(@Param("followerId") Long followerId, @Param("followeeId") Long followeeId);
+
+    boolean existsByFollowerIdAndFolloweeId(Long followerId, Long followeeId);
+
+    // Dùng index idx_follows_followee_follower
+    @Query("SELECT f.followerId FROM Follow f WHERE f.followeeId = :followeeId")
+    List<Long> findFollowerIds(@Param("followeeId") Long followeeId);
+
+    @Query("SELECT f.followeeId FROM Follow f WHERE f.followerId = :followerId")
+    List<Long> findFolloweeIds(@Param("followerId") Long followerId);
+
+    // Danh sách kề theo id giảm dần, dùng index idx_follows_followee_follower / uk_follows_follower_followee
+    @Query("SELECT f.followerId FROM Follow f WHERE f.followeeId = :followeeId AND f.followerId < :beforeId " +
+           "ORDER BY f.followerId DESC")
+    List<Long> findFollowerIdsBefore(@Param("followeeId") Long followeeId, @Param("beforeId") Long beforeId,
+                                     Pageable pageable);
+
+    @Query("SELECT f.followeeId FROM Follow f WHERE f.followerId = :followerId AND f.followeeId < :beforeId " +
+           "ORDER BY f.followeeId DESC")
+    List<Long> findFolloweeIdsBefore(@Param("followerId") Long followerId, @Param("beforeId") Long beforeId,
+                                     Pageable pageable);
+
+    @Query("SELECT f.followeeId FROM Follow f WHERE f.followerId = :followerId AND f.followeeId IN :followeeIds")
+    List<Long> findFolloweeIdsIn(@Param("followerId") Long followerId,
+                                 @Param("followeeIds") Collection<Long> followeeIds);
+
+    // Một chunk follow hai chiều của user sắp bị xóa
+    @Query("SELECT f FROM Follow f WHERE f.followerId = :userId OR f.followeeId = :userId")
+    List<Follow> findChunkByUser(@Param("userId") Long userId, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Follow f WHERE f.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
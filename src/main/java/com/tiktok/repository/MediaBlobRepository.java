@@ -0,0 +1,39 @@
+package com.tiktok.repository;
+
+import com.tiktok.model.MediaBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, Long> {
+
+    Optional<MediaBlob> findBySha256AndResourceType(String sha256, String resourceType);
+
+    @Query("SELECT b.publicId FROM MediaBlob b WHERE b.publicId IN :publicIds AND b.resourceType = :resourceType")
+    List<String> findExistingPublicIds(@Param("publicIds") Collection<String> publicIds,
+                                       @Param("resourceType") String resourceType);
+
+    // Thêm tham chiếu; blob đã về 0 (đang bị xóa) thì không hồi sinh, trả 0
+    @Transactional
+    @Modifying
+    @Query("UPDATE MediaBlob b SET b.refCount = b.refCount + 1 WHERE b.id = :id AND b.refCount > 0")
+    int retain(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE MediaBlob b SET b.refCount = b.refCount - 1 " +
+           "WHERE b.publicId = :publicId AND b.resourceType = :resourceType AND b.refCount > 0")
+    int release(@Param("publicId") String publicId, @Param("resourceType") String resourceType);
+
+    @Modifying
+    @Query("DELETE FROM MediaBlob b " +
+           "WHERE b.publicId = :publicId AND b.resourceType = :resourceType AND b.refCount = 0")
+    int deleteUnreferenced(@Param("publicId") String publicId, @Param("resourceType") String resourceType);
+}
@@ -4,6 +4,8 @@ import com.tiktok.model.RefreshToken;
 import com.tiktok.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -18,4 +20,8 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
 
   @Modifying
   void deleteByToken(String token);
+
+  @Modifying
+  @Query("DELETE FROM RefreshToken t WHERE t.user.id = :userId")
+  int deleteByUserId(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.tiktok.repository;
+
+import com.tiktok.model.UploadJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadJobRepository extends JpaRepository<UploadJob, String> {
+
+    // Job đến hạn chạy trên node này: PENDING tới giờ retry, hoặc RUNNING nhưng lease đã hết (worker chết).
+    // File spool chỉ có trên node đã nhận upload, trừ khi đã upload xong lên storage
+    @Query("SELECT j.id FROM UploadJob j WHERE (j.nodeId = :nodeId OR j.fileUrl IS NOT NULL) AND " +
+           "((j.status = 'PENDING' AND j.nextAttemptAt <= :now) OR " +
+           "(j.status = 'RUNNING' AND j.leaseUntil < :now)) " +
+           "ORDER BY j.nextAttemptAt")
+    List<String> findDueJobIds(@Param("nodeId") String nodeId, @Param("now") LocalDateTime now, Pageable pageable);
+
+    // Claim job bằng một UPDATE có điều kiện, chỉ một worker claim được; job còn cần file spool
+    // chỉ được claim bởi node đã spool nó
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadJob j SET j.status = 'RUNNING', j.leaseUntil = :leaseUntil, " +
+           "j.attempts = j.attempts + 1, j.updatedAt = :now WHERE j.id = :id AND " +
+           "(j.nodeId = :nodeId OR j.fileUrl IS NOT NULL) AND " +
+           "((j.status = 'PENDING' AND j.nextAttemptAt <= :now) OR " +
+           "(j.status = 'RUNNING' AND j.leaseUntil < :now))")
+    int claim(@Param("id") String id, @Param("nodeId") String nodeId, @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // Ghi tiến độ và gia hạn lease của job đang chạy
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadJob j SET j.progress = :progress, j.leaseUntil = :leaseUntil " +
+           "WHERE j.id = :id AND j.status = 'RUNNING'")
+    int updateProgress(@Param("id") String id, @Param("progress") int progress,
+                       @Param("leaseUntil") LocalDateTime leaseUntil);
+}
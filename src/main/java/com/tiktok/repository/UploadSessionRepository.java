@@ -0,0 +1,23 @@
+package com.tiktok.repository;
+
+import com.tiktok.model.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    @Query("SELECT s FROM UploadSession s WHERE s.status = 'OPEN' AND s.expiresAt < :now")
+    List<UploadSession> findExpired(@Param("now") LocalDateTime now);
+
+    // File của phiên đã complete thuộc về UploadJob, chỉ xóa row
+    @Modifying
+    @Query("DELETE FROM UploadSession s WHERE s.status = 'COMPLETED' AND s.expiresAt < :before")
+    int deleteCompletedBefore(@Param("before") LocalDateTime before);
+}
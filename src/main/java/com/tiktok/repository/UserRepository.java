@@ -1,17 +1,83 @@
 package com.tiktok.repository;
 
 import com.tiktok.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     
+    // Projection nhẹ để build search index, không load entity
+    interface SearchRow {
+        Long getId();
+        String getNickname();
+        String getFirstName();
+        String getLastName();
+        Integer getFollowersCount();
+        Boolean getTick();
+    }
+    
+    // Keyset pagination theo (createdAt DESC, id DESC), dùng index idx_users_created_at_id
+    @Query("SELECT u FROM User u ORDER BY u.createdAt DESC, u.id DESC")
+    List<User> findLatest(Pageable pageable);
+
+    @Query("SELECT u FROM User u WHERE " +
+           "u.createdAt < :createdAt OR (u.createdAt = :createdAt AND u.id < :id) " +
+           "ORDER BY u.createdAt DESC, u.id DESC")
+    List<User> findLatestBefore(
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
+    
+    // Tổng like của creator được cộng/trừ trực tiếp trong DB
+    @Modifying
+    @Query("UPDATE User u SET u.likesCount = " +
+           "CASE WHEN u.likesCount + :delta < 0 THEN 0 ELSE u.likesCount + :delta END WHERE u.id = :id")
+    int addLikesCount(@Param("id") Long id, @Param("delta") int delta);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.followersCount = " +
+           "CASE WHEN u.followersCount + :delta < 0 THEN 0 ELSE u.followersCount + :delta END WHERE u.id = :id")
+    int addFollowersCount(@Param("id") Long id, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE User u SET u.followingsCount = " +
+           "CASE WHEN u.followingsCount + :delta < 0 THEN 0 ELSE u.followingsCount + :delta END WHERE u.id = :id")
+    int addFollowingsCount(@Param("id") Long id, @Param("delta") int delta);
+
+    // Xóa thẳng row user, không load entity (nội dung đã được ContentDeletionService dọn trước)
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :id")
+    int deleteRow(@Param("id") Long id);
+
+    @Query("SELECT MIN(u.id), MAX(u.id) FROM User u")
+    List<Object[]> findIdRange();
+
+    // Tính lại counter từ bảng nguồn cho một khoảng id, bỏ qua các row đang có delta chờ flush
+    @Modifying
+    @Query(value = "UPDATE users u SET " +
+                   "u.followers_count = (SELECT COUNT(*) FROM follows f WHERE f.followee_id = u.id), " +
+                   "u.followings_count = (SELECT COUNT(*) FROM follows f WHERE f.follower_id = u.id), " +
+                   "u.likes_count = (SELECT COUNT(*) FROM video_likes l JOIN videos v ON v.id = l.video_id " +
+                   "WHERE v.user_id = u.id) " +
+                   "WHERE u.id BETWEEN :fromId AND :toId AND u.id NOT IN (:excludedIds)",
+           nativeQuery = true)
+    int reconcileCounts(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                        @Param("excludedIds") Collection<Long> excludedIds);
+
+    // Followee có nhiều follower (celebrity) không fan-out khi đăng video, được merge lúc đọc timeline
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids AND u.followersCount >= :threshold")
+    List<Long> findIdsWithFollowersAtLeast(@Param("ids") Collection<Long> ids, @Param("threshold") int threshold);
+    
     Optional<User> findByNickname(String nickname);
     
     Optional<User> findByEmail(String email);
@@ -20,9 +86,37 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     boolean existsByEmail(String email);
     
+    // Fallback khi UserSearchIndex chưa build xong
     @Query("SELECT u FROM User u WHERE " +
            "LOWER(u.nickname) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
            "LOWER(u.firstName) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-           "LOWER(u.lastName) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<User> searchUsers(@Param("query") String query);
+           "LOWER(u.lastName) LIKE LOWER(CONCAT('%', :query, '%')) " +
+           "ORDER BY u.followersCount DESC, u.id DESC")
+    List<User> searchUsers(@Param("query") String query, Pageable pageable);
+
+    // Trạng thái xác thực cho UserStateCache
+    interface AuthStateRow {
+        Integer getTokenVersion();
+        Boolean getDisabled();
+    }
+
+    @Query("SELECT u.tokenVersion AS tokenVersion, u.disabled AS disabled FROM User u WHERE u.id = :id")
+    Optional<AuthStateRow> findAuthState(@Param("id") Long id);
+
+    // Access token đã phát hành mang version cũ nên hết hiệu lực
+    @Modifying
+    @Query("UPDATE User u SET u.tokenVersion = u.tokenVersion + 1 WHERE u.id = :id")
+    int incrementTokenVersion(@Param("id") Long id);
+
+    @Modifying
+    @Query("UPDATE User u SET u.disabled = true, u.tokenVersion = u.tokenVersion + 1 WHERE u.id = :id")
+    int disable(@Param("id") Long id);
+
+    @Query("SELECT MAX(u.id) FROM User u")
+    Long findMaxId();
+
+    @Query("SELECT u.id AS id, u.nickname AS nickname, u.firstName AS firstName, u.lastName AS lastName, " +
+           "u.followersCount AS followersCount, u.tick AS tick " +
+           "FROM User u WHERE u.id > :fromId AND u.id <= :toId ORDER BY u.id")
+    List<SearchRow> findSearchRows(@Param("fromId") long fromId, @Param("toId") long toId);
 }
@@ -0,0 +1,50 @@
+package com.tiktok.repository;
+
+import com.tiktok.model.VideoLike;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface VideoLikeRepository extends JpaRepository<VideoLike, Long> {
+
+    // Dòng like cần cho xóa hàng loạt
+    interface LikeRow {
+        Long getId();
+        Long getVideoId();
+        Long getOwnerId();
+    }
+
+    // Trả về 1 nếu like mới được tạo, 0 nếu đã like từ trước (unique user_id, video_id)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO video_likes (user_id, video_id, created_at) " +
+                   "VALUES (:userId, :videoId, NOW())", nativeQuery = true)
+    int insertIgnore(@Param("userId") Long userId, @Param("videoId") Long videoId);
+
+    @Modifying
+    @Query("DELETE FROM VideoLike l WHERE l.userId = :userId AND l.videoId = :videoId")
+    int deleteLike(@Param("userId") Long userId, @Param("videoId") Long videoId);
+
+    @Query("SELECT l.videoId FROM VideoLike l WHERE l.userId = :userId AND l.videoId IN :videoIds")
+    List<Long> findLikedVideoIds(@Param("userId") Long userId, @Param("videoIds") Collection<Long> videoIds);
+
+    // Một chunk like của các video sắp bị xóa
+    @Query("SELECT l.id AS id, l.videoId AS videoId FROM VideoLike l WHERE l.videoId IN :videoIds")
+    List<LikeRow> findChunkByVideoIdIn(@Param("videoIds") Collection<Long> videoIds, Pageable pageable);
+
+    // Một chunk like user đã tim, kèm chủ video để trừ lại tổng like (video đã mất thì ownerId null)
+    @Query(value = "SELECT l.id AS id, l.video_id AS videoId, v.user_id AS ownerId FROM video_likes l " +
+                   "LEFT JOIN videos v ON v.id = l.video_id WHERE l.user_id = :userId",
+           nativeQuery = true)
+    List<LikeRow> findChunkByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM VideoLike l WHERE l.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
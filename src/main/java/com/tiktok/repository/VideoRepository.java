@@ -1,30 +1,165 @@
 package com.tiktok.repository;
 
 import com.tiktok.model.Video;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface VideoRepository extends JpaRepository<Video, Long> {
+
+    // Projection nhẹ để build search index, không load entity/user
+    interface SearchRow {
+        Long getId();
+        String getDescription();
+        String getMusic();
+        Integer getLikesCount();
+        Integer getCommentsCount();
+        Integer getSharesCount();
+        Integer getViewsCount();
+        String getViewable();
+    }
     
-    Page<Video> findAllByOrderByCreatedAtDesc(Pageable pageable);
-    
-    List<Video> findByUserId(Long userId);
+    // Counter của video gần đây để khởi tạo ranking trending
+    interface TrendingSeedRow {
+        Long getId();
+        Integer getLikesCount();
+        Integer getCommentsCount();
+        Integer getSharesCount();
+        Integer getViewsCount();
+        LocalDateTime getCreatedAt();
+    }
     
-    @Query("SELECT v FROM Video v WHERE v.viewable = 'public' ORDER BY RAND()")
-    Page<Video> findRandomPublicVideos(Pageable pageable);
+    // Thông tin video cần khi xóa hàng loạt
+    interface DeletionRow {
+        Long getId();
+        Long getOwnerId();
+        String getPublicId();
+    }
     
+    // Keyset pagination theo (createdAt DESC, id DESC), dùng index idx_videos_created_at_id
+    @Query("SELECT v FROM Video v ORDER BY v.createdAt DESC, v.id DESC")
+    List<Video> findLatest(Pageable pageable);
+
     @Query("SELECT v FROM Video v WHERE " +
-           "LOWER(v.description) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-           "LOWER(v.music) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Video> searchVideos(@Param("query") String query);
+           "v.createdAt < :createdAt OR (v.createdAt = :createdAt AND v.id < :id) " +
+           "ORDER BY v.createdAt DESC, v.id DESC")
+    List<Video> findLatestBefore(
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
+    
+    @Query("SELECT v.user.id FROM Video v WHERE v.id = :id")
+    Optional<Long> findOwnerId(@Param("id") Long id);
+
+    // Số view đã flush, dùng cho POST /view thay vì load cả entity
+    @Query("SELECT v.viewsCount FROM Video v WHERE v.id = :id")
+    Optional<Integer> findViewsCount(@Param("id") Long id);
+
+    // Một chunk id video của user sắp bị xóa
+    @Query("SELECT v.id FROM Video v WHERE v.userId = :userId ORDER BY v.id")
+    List<Long> findIdChunkByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT v.id AS id, v.userId AS ownerId, v.publicId AS publicId FROM Video v WHERE v.id IN :ids")
+    List<DeletionRow> findDeletionRows(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "DELETE FROM video_allows WHERE video_id IN (:ids)", nativeQuery = true)
+    int deleteAllowsByVideoIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Video v WHERE v.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Cộng/trừ trực tiếp trong DB, không read-modify-write
+    @Modifying
+    @Query("UPDATE Video v SET v.likesCount = " +
+           "CASE WHEN v.likesCount + :delta < 0 THEN 0 ELSE v.likesCount + :delta END WHERE v.id = :id")
+    int addLikesCount(@Param("id") Long id, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE Video v SET v.commentsCount = " +
+           "CASE WHEN v.commentsCount + :delta < 0 THEN 0 ELSE v.commentsCount + :delta END WHERE v.id = :id")
+    int addCommentsCount(@Param("id") Long id, @Param("delta") int delta);
+
+    @Modifying
+    @Query("UPDATE Video v SET v.sharesCount = v.sharesCount + 1 WHERE v.id = :id")
+    int incrementSharesCount(@Param("id") Long id);
+    
+    @Query("SELECT MIN(v.id), MAX(v.id) FROM Video v")
+    List<Object[]> findIdRange();
+
+    // Tính lại counter từ bảng nguồn cho một khoảng id, bỏ qua các row đang có delta chờ flush
+    @Modifying
+    @Query(value = "UPDATE videos v SET " +
+                   "v.likes_count = (SELECT COUNT(*) FROM video_likes l WHERE l.video_id = v.id), " +
+                   "v.comments_count = (SELECT COUNT(*) FROM comments c WHERE c.video_id = v.id) " +
+                   "WHERE v.id BETWEEN :fromId AND :toId AND v.id NOT IN (:excludedIds)",
+           nativeQuery = true)
+    int reconcileCounts(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                        @Param("excludedIds") Collection<Long> excludedIds);
+
+    @Query("SELECT v.id FROM Video v WHERE v.viewable = 'public' ORDER BY v.id DESC")
+    List<Long> findPublicVideoIds(Pageable pageable);
+    
+    @Query("SELECT v FROM Video v WHERE v.viewable = 'public' AND " +
+           "(LOWER(v.description) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
+           "LOWER(v.music) LIKE LOWER(CONCAT('%', :query, '%'))) " +
+           "ORDER BY v.createdAt DESC, v.id DESC")
+    List<Video> searchVideos(@Param("query") String query, Pageable pageable);
+
+    @Query("SELECT v FROM Video v WHERE v.viewable = 'public' AND " +
+           "(LOWER(v.description) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
+           "LOWER(v.music) LIKE LOWER(CONCAT('%', :query, '%'))) AND " +
+           "(v.createdAt < :createdAt OR (v.createdAt = :createdAt AND v.id < :id)) " +
+           "ORDER BY v.createdAt DESC, v.id DESC")
+    List<Video> searchVideosBefore(
+            @Param("query") String query,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
     
-    @Query("SELECT v FROM Video v WHERE v.user.id = :userId AND v.viewable = 'public'")
-    List<Video> findPublicVideosByUserId(@Param("userId") Long userId);
+    @Query("SELECT v.id AS id, v.likesCount AS likesCount, v.commentsCount AS commentsCount, " +
+           "v.sharesCount AS sharesCount, v.viewsCount AS viewsCount, v.createdAt AS createdAt " +
+           "FROM Video v WHERE v.viewable = 'public' AND v.createdAt >= :since ORDER BY v.createdAt DESC")
+    List<TrendingSeedRow> findTrendingSeedRows(@Param("since") LocalDateTime since, Pageable pageable);
+    
+    // Id video public mới nhất của một nhóm user, dùng cho following timeline
+    @Query("SELECT v.id FROM Video v WHERE v.user.id IN :userIds AND v.viewable = 'public' " +
+           "AND v.id < :beforeId ORDER BY v.id DESC")
+    List<Long> findPublicVideoIdsByUserIdsBefore(
+            @Param("userIds") Collection<Long> userIds,
+            @Param("beforeId") Long beforeId,
+            Pageable pageable);
+    
+    @Query("SELECT MAX(v.id) FROM Video v")
+    Long findMaxId();
+
+    @Query("SELECT v.id AS id, v.description AS description, v.music AS music, " +
+           "v.likesCount AS likesCount, v.commentsCount AS commentsCount, " +
+           "v.sharesCount AS sharesCount, v.viewsCount AS viewsCount, v.viewable AS viewable " +
+           "FROM Video v WHERE v.id > :fromId AND v.id <= :toId ORDER BY v.id")
+    List<SearchRow> findSearchRows(@Param("fromId") long fromId, @Param("toId") long toId);
+    
+    // Dùng index idx_videos_user_viewable_created_at_id
+    @Query("SELECT v FROM Video v WHERE v.user.id = :userId AND v.viewable = 'public' " +
+           "ORDER BY v.createdAt DESC, v.id DESC")
+    List<Video> findPublicVideosByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT v FROM Video v WHERE v.user.id = :userId AND v.viewable = 'public' AND " +
+           "(v.createdAt < :createdAt OR (v.createdAt = :createdAt AND v.id < :id)) " +
+           "ORDER BY v.createdAt DESC, v.id DESC")
+    List<Video> findPublicVideosByUserIdBefore(
+            @Param("userId") Long userId,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            Pageable pageable);
 }
@@ -0,0 +1,24 @@
+package com.tiktok.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Principal của request đã xác thực, dựng hoàn toàn từ claim của access token.
+ * Bất biến vì cùng một instance được JwtVerifier cache và dùng lại giữa các request.
+ */
+@Getter
+@AllArgsConstructor
+public class AuthenticatedUser {
+  private final Long id;
+  private final String email;
+  private final List<String> roles;
+  private final int tokenVersion;
+
+  @Override
+  public String toString() {
+    return email;
+  }
+}
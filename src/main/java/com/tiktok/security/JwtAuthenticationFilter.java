@@ -1,12 +1,11 @@
 package com.tiktok.security;
 
-import com.tiktok.service.CustomUserDetailsService;
-import com.tiktok.service.JwtService;
+import com.tiktok.service.UserStateCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -16,15 +15,21 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
 
+/**
+ * Xác thực request chỉ từ claim của access token (không load user từ DB); thu hồi token và
+ * tài khoản bị khóa được kiểm tra qua UserStateCache
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
   @Autowired
-  private JwtService jwtService;
+  private JwtVerifier jwtVerifier;
 
   @Autowired
-  private CustomUserDetailsService userDetailsService;
+  private UserStateCache userStateCache;
 
   @Override
   protected void doFilterInternal(
@@ -33,7 +38,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
       @NonNull FilterChain filterChain) throws ServletException, IOException {
     final String authHeader = request.getHeader("Authorization");
     final String jwt;
-    final String userEmail;
 
     if (authHeader == null || !authHeader.startsWith("Bearer ")) {
       filterChain.doFilter(request, response);
@@ -43,16 +47,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     jwt = authHeader.substring(7);
 
     try {
-      userEmail = jwtService.extractUsername(jwt);
+      if (SecurityContextHolder.getContext().getAuthentication() == null) {
+        AuthenticatedUser user = jwtVerifier.verify(jwt);
 
-      if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-        UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-
-        if (jwtService.isTokenValid(jwt, userDetails)) {
+        if (user != null && userStateCache.isActive(user.getId(), user.getTokenVersion())) {
+          List<SimpleGrantedAuthority> authorities = user.getRoles().stream()
+              .map(SimpleGrantedAuthority::new)
+              .collect(Collectors.toList());
           UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-              userDetails,
+              user,
               null,
-              userDetails.getAuthorities());
+              authorities);
           authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
           SecurityContextHolder.getContext().setAuthentication(authToken);
         }
@@ -63,4 +68,4 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     filterChain.doFilter(request, response);
   }
-}
\ No newline at end of file
+}
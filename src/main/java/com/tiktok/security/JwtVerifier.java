@@ -0,0 +1,120 @@
+package com.tiktok.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.tiktok.service.JwtService;
+import com.tiktok.util.CacheMetrics;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Xác thực access token: key và JwtParser được dựng một lần, mỗi token chỉ parse một lần
+ * thành AuthenticatedUser.
+ *
+ * Token đã xác thực được cache theo phần chữ ký (jwt.verified-cache.max-size), entry hết hạn
+ * đúng lúc token hết hạn, nên client gửi lại cùng token không phải tính lại HMAC và parse JSON.
+ * Entry lưu cả phần header.payload và chỉ được dùng khi khớp nguyên văn với token gửi lên.
+ * Thu hồi token vẫn do UserStateCache kiểm tra ở mỗi request. max-size <= 0 tắt cache.
+ */
+@Component
+public class JwtVerifier {
+
+  private final JwtParser parser;
+  private final Cache<String, Verified> verified;
+  private final boolean caching;
+
+  public JwtVerifier(
+      @Value("${jwt.secret}") String secret,
+      @Value("${jwt.verified-cache.max-size:10000}") long maxSize) {
+    this.parser = Jwts.parserBuilder()
+        .setSigningKey(Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret)))
+        .build();
+    // Caffeine evict bất đồng bộ nên maximumSize(0) vẫn có hit, tắt hẳn thay vì dựa vào đó
+    this.caching = maxSize > 0;
+    this.verified = Caffeine.newBuilder()
+        .maximumSize(Math.max(0, maxSize))
+        .expireAfter(new Expiry<String, Verified>() {
+          @Override
+          public long expireAfterCreate(String signature, Verified entry, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, entry.expiresAt - System.currentTimeMillis()));
+          }
+
+          @Override
+          public long expireAfterUpdate(String signature, Verified entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(signature, entry, currentTime);
+          }
+
+          @Override
+          public long expireAfterRead(String signature, Verified entry, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Principal từ claim của token, null nếu token hợp lệ nhưng thiếu claim uid/ver
+   * (token phát hành trước khi có các claim này).
+   *
+   * @throws JwtException token sai chữ ký, hết hạn hoặc không parse được
+   */
+  public AuthenticatedUser verify(String token) {
+    int dot = token.lastIndexOf('.');
+    if (dot <= 0) {
+      throw new MalformedJwtException("JWT must have a signature");
+    }
+    String signature = token.substring(dot + 1);
+    Verified entry = caching ? verified.getIfPresent(signature) : null;
+    if (entry != null && entry.expiresAt > System.currentTimeMillis()
+        && token.regionMatches(0, entry.signingInput, 0, dot) && entry.signingInput.length() == dot) {
+      return entry.user;
+    }
+
+    Claims claims = parser.parseClaimsJws(token).getBody();
+    AuthenticatedUser user = toUser(claims);
+    if (caching && user != null && claims.getExpiration() != null) {
+      verified.put(signature, new Verified(token.substring(0, dot), user, claims.getExpiration().getTime()));
+    }
+    return user;
+  }
+
+  public Map<String, Object> stats() {
+    return CacheMetrics.snapshot(verified);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static AuthenticatedUser toUser(Claims claims) {
+    Long userId = claims.get(JwtService.CLAIM_USER_ID, Long.class);
+    Integer tokenVersion = claims.get(JwtService.CLAIM_TOKEN_VERSION, Integer.class);
+    if (userId == null || tokenVersion == null) {
+      return null;
+    }
+    List<String> roles = claims.get(JwtService.CLAIM_ROLES, List.class);
+    return new AuthenticatedUser(userId, claims.getSubject(), roles == null ? List.of() : List.copyOf(roles), tokenVersion);
+  }
+
+  private static final class Verified {
+    final String signingInput; // header.payload đã được ký
+    final AuthenticatedUser user;
+    final long expiresAt;
+
+    Verified(String signingInput, AuthenticatedUser user, long expiresAt) {
+      this.signingInput = signingInput;
+      this.user = user;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -47,9 +47,11 @@ public class SecurityConfig {
         .antMatchers("/api/videos/user/*").permitAll()
         .antMatchers("/api/videos/**").permitAll()
         .antMatchers("/api/users/email/**").permitAll()
+        .antMatchers("/api/search/**").permitAll()
         .antMatchers("/api/chats/**").permitAll()
         .antMatchers("/api/messages/**").permitAll()
         .antMatchers("/ws/**").permitAll()
+        .antMatchers("/media/**").permitAll()
         .anyRequest().authenticated()
         .and()
         .sessionManagement()
@@ -94,7 +96,7 @@ public class SecurityConfig {
       ));
 
       configuration.setAllowedHeaders(List.of("*"));
-      configuration.setExposedHeaders(List.of("Authorization"));
+      configuration.setExposedHeaders(List.of("Authorization", "X-Feed-Seed"));
       configuration.setAllowCredentials(true);
 
       UrlBasedCorsConfigurationSource source =
@@ -0,0 +1,130 @@
+package com.tiktok.service;
+
+import com.tiktok.model.AssetDeletion;
+import com.tiktok.repository.AssetDeletionRepository;
+import com.tiktok.repository.MediaBlobRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Xóa asset trên MediaStorage bất đồng bộ qua outbox asset_deletions.
+ *
+ * enqueue() chạy trong transaction của request (xóa video/user) nên outbox chỉ có khi
+ * xóa thành công, request không phải chờ lời gọi remote. Worker lấy các row đến hạn theo
+ * batch, gom theo resource type và xóa hàng loạt; chỉ row có id xóa lỗi mới retry với
+ * exponential backoff, quá assets.cleanup.max-attempts thì chuyển DEAD để xử lý tay.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AssetCleanupService {
+
+    private static final long MAX_BACKOFF_MS = TimeUnit.HOURS.toMillis(6);
+
+    private final AssetDeletionRepository assetDeletionRepository;
+    private final MediaBlobRepository mediaBlobRepository;
+    private final MediaStorage mediaStorage;
+
+    @Value("${assets.cleanup.batch-size:100}")
+    private int batchSize;
+
+    @Value("${assets.cleanup.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${assets.cleanup.retry-base-delay-ms:30000}")
+    private long retryBaseDelayMs;
+
+    @Transactional
+    public void enqueue(String publicId, String resourceType) {
+        assetDeletionRepository.save(new AssetDeletion(publicId, resourceType));
+    }
+
+    /**
+     * Xử lý hết các row đến hạn, mỗi vòng một batch
+     */
+    @Scheduled(fixedDelayString = "${assets.cleanup.poll-interval-ms:10000}")
+    public void drain() {
+        try {
+            List<AssetDeletion> batch;
+            do {
+                batch = assetDeletionRepository.findDue(LocalDateTime.now(), PageRequest.of(0, batchSize));
+                process(batch);
+            } while (batch.size() == batchSize);
+        } catch (RuntimeException e) {
+            log.error("Error draining asset deletions: {}", e.getMessage(), e);
+        }
+    }
+
+    private void process(List<AssetDeletion> batch) {
+        Map<String, List<AssetDeletion>> byType = batch.stream()
+                .collect(Collectors.groupingBy(AssetDeletion::getResourceType, LinkedHashMap::new, Collectors.toList()));
+
+        for (Map.Entry<String, List<AssetDeletion>> group : byType.entrySet()) {
+            String resourceType = group.getKey();
+            Set<String> publicIds = group.getValue().stream()
+                    .map(AssetDeletion::getPublicId)
+                    .collect(Collectors.toCollection(HashSet::new));
+            // Storage theo nội dung (local) có thể đã nhận lại đúng file này sau khi blob về 0
+            publicIds.removeAll(mediaBlobRepository.findExistingPublicIds(publicIds, resourceType));
+
+            Map<String, String> failed;
+            try {
+                failed = publicIds.isEmpty() ? Map.of() : mediaStorage.deleteAll(new ArrayList<>(publicIds), resourceType);
+            } catch (IOException | RuntimeException e) {
+                retryLater(group.getValue(), deletion -> e.getMessage());
+                continue;
+            }
+
+            // Chỉ row xóa lỗi được retry, còn lại bỏ khỏi outbox
+            Map<Boolean, List<AssetDeletion>> byResult = group.getValue().stream()
+                    .collect(Collectors.partitioningBy(deletion -> failed.containsKey(deletion.getPublicId())));
+            assetDeletionRepository.deleteAllInBatch(byResult.get(false));
+            if (!byResult.get(true).isEmpty()) {
+                retryLater(byResult.get(true), deletion -> failed.get(deletion.getPublicId()));
+            }
+        }
+    }
+
+    private void retryLater(List<AssetDeletion> deletions, Function<AssetDeletion, String> errorOf) {
+        for (AssetDeletion deletion : deletions) {
+            String error = errorOf.apply(deletion);
+            deletion.setAttempts(deletion.getAttempts() + 1);
+            deletion.setError(error);
+            if (deletion.getAttempts() >= maxAttempts) {
+                deletion.setStatus(AssetDeletion.DEAD);
+                log.error("Giving up deleting {} {} after {} attempts: {}", deletion.getResourceType(),
+                        deletion.getPublicId(), deletion.getAttempts(), error);
+            } else {
+                deletion.setNextAttemptAt(LocalDateTime.now()
+                        .plus(backoffMillis(deletion.getAttempts()), ChronoUnit.MILLIS));
+            }
+        }
+        assetDeletionRepository.saveAll(deletions);
+        log.warn("Deleting {} assets failed, will retry: {}", deletions.size(), errorOf.apply(deletions.get(0)));
+    }
+
+    private long backoffMillis(int attempts) {
+        long delay = retryBaseDelayMs << Math.min(Math.max(attempts - 1, 0), 20);
+        delay = Math.min(delay, MAX_BACKOFF_MS);
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+}
@@ -7,12 +7,11 @@ import com.tiktok.exception.UnauthorizedException;
 import com.tiktok.model.RefreshToken;
 import com.tiktok.model.User;
 import com.tiktok.repository.UserRepository;
+import com.tiktok.util.AfterCommit;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -36,7 +35,13 @@ public class AuthService {
   private AuthenticationManager authenticationManager;
 
   @Autowired
-  private CustomUserDetailsService userDetailsService;
+  private UserSearchIndex userSearchIndex;
+
+  @Autowired
+  private SearchSuggestService searchSuggestService;
+
+  @Autowired
+  private UserStateCache userStateCache;
 
   @Value("${jwt.expiration}")
   private Long jwtExpiration;
@@ -72,10 +77,14 @@ public class AuthService {
     user.setAvatar(generateDefaultAvatar(request.getNickname()));
 
     user = userRepository.save(user);
+    User registered = user;
+    AfterCommit.run(() -> {
+      userSearchIndex.index(registered);
+      searchSuggestService.onUserChanged(registered);
+    });
 
     // Generate tokens
-    UserDetails userDetails = userDetailsService.loadUserByUsername(user.getEmail());
-    String accessToken = jwtService.generateToken(userDetails);
+    String accessToken = jwtService.generateToken(user);
     RefreshToken refreshToken = refreshTokenService.createRefreshToken(user.getId());
 
     return AuthResponse.builder()
@@ -88,7 +97,7 @@ public class AuthService {
 
   public AuthResponse login(LoginRequest request) {
     // Authenticate user
-    Authentication authentication = authenticationManager.authenticate(
+    authenticationManager.authenticate(
         new UsernamePasswordAuthenticationToken(
             request.getEmail(),
             request.getPassword()));
@@ -97,8 +106,7 @@ public class AuthService {
         .orElseThrow(() -> new UnauthorizedException("Invalid email or password"));
 
     // Generate tokens
-    UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-    String accessToken = jwtService.generateToken(userDetails);
+    String accessToken = jwtService.generateToken(user);
     RefreshToken refreshToken = refreshTokenService.createRefreshToken(user.getId());
 
     return AuthResponse.builder()
@@ -116,8 +124,10 @@ public class AuthService {
         .map(refreshTokenService::verifyExpiration)
         .map(RefreshToken::getUser)
         .map(user -> {
-          UserDetails userDetails = userDetailsService.loadUserByUsername(user.getEmail());
-          String accessToken = jwtService.generateToken(userDetails);
+          if (Boolean.TRUE.equals(user.getDisabled())) {
+            throw new UnauthorizedException("Account is disabled");
+          }
+          String accessToken = jwtService.generateToken(user);
 
           return AuthResponse.builder()
               .accessToken(accessToken)
@@ -136,6 +146,17 @@ public class AuthService {
     }
   }
 
+  /**
+   * Thu hồi mọi phiên của user: xóa refresh token và tăng token version để các access token
+   * đã phát hành bị từ chối
+   */
+  @Transactional
+  public void logoutAll(Long userId) {
+    refreshTokenService.deleteByUserId(userId);
+    userRepository.incrementTokenVersion(userId);
+    AfterCommit.run(() -> userStateCache.invalidate(userId));
+  }
+
   private UserDTO convertToUserDTO(User user) {
     return UserDTO.builder()
         .id(user.getId())
@@ -3,32 +3,84 @@ package com.tiktok.service;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.Transformation;
 import com.cloudinary.utils.ObjectUtils;
+import com.tiktok.dto.StoredMedia;
+import com.tiktok.exception.ServiceUnavailableException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * MediaStorage trên Cloudinary (media.storage=cloudinary, mặc định)
+ */
 @Service
+@ConditionalOnProperty(name = "media.storage", havingValue = "cloudinary", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
-public class CloudinaryService {
+public class CloudinaryService implements MediaStorage {
+
+  private static final int DELETE_BATCH_SIZE = 100;
 
   private final Cloudinary cloudinary;
 
-  public Map<String, Object> uploadVideo(MultipartFile file) throws IOException {
-    if (file.isEmpty()) {
+  @Value("${upload.chunk-size-bytes:6000000}")
+  private int chunkSize;
+
+  @Value("${upload.memory-fraction:0.2}")
+  private double memoryFraction;
+
+  @Value("${upload.admission-timeout-ms:2000}")
+  private long admissionTimeoutMs;
+
+  // Số upload video chạy đồng thời, mỗi upload giữ tối đa ~2 chunk trên heap
+  private Semaphore uploadSlots;
+
+  @PostConstruct
+  void initUploadSlots() {
+    long budget = (long) (Runtime.getRuntime().maxMemory() * memoryFraction);
+    int permits = (int) Math.max(1, budget / (2L * chunkSize));
+    uploadSlots = new Semaphore(permits, true);
+    log.info("Video upload concurrency: {} (chunk {} bytes)", permits, chunkSize);
+  }
+
+  /**
+   * Upload video từ file trên đĩa theo từng chunk chunkSize (Cloudinary upload_large),
+   * heap dùng cho mỗi upload không phụ thuộc kích thước file
+   */
+  @Override
+  public StoredMedia uploadVideo(File file, String contentType, ProgressListener progress)
+      throws IOException {
+    if (file.length() == 0) {
       throw new IllegalArgumentException("File is empty");
     }
-
-    String contentType = file.getContentType();
     if (contentType == null || !contentType.startsWith("video/")) {
       throw new IllegalArgumentException("File must be a video");
     }
 
+    acquireUploadSlot();
+    try {
+      Map<String, Object> uploadResult = progress == null
+          ? cloudinary.uploader().uploadLarge(file, videoUploadParams(), chunkSize)
+          : cloudinary.uploader().uploadLarge(file, videoUploadParams(), chunkSize, progress::onProgress);
+      log.info("Video uploaded: {}", uploadResult.get("secure_url"));
+      return toStoredMedia(uploadResult, VIDEO);
+    } finally {
+      uploadSlots.release();
+    }
+  }
+
+  private Map<String, Object> videoUploadParams() {
     String publicId = "videos/" + UUID.randomUUID();
 
     Map<String, Object> uploadParams = ObjectUtils.asMap(
@@ -42,18 +94,25 @@ public class CloudinaryService {
                 .height(300)
                 .crop("pad")
                 .audioCodec("none")),
-        "eager_async", true,
-        "chunk_size", 6_000_000);
+        "eager_async", true);
 
-    Map<String, Object> uploadResult = cloudinary.uploader().upload(file.getBytes(), uploadParams);
-
-    log.info("Video uploaded: {}", uploadResult.get("secure_url"));
+    return uploadParams;
+  }
 
-    return uploadResult;
+  private void acquireUploadSlot() {
+    try {
+      if (!uploadSlots.tryAcquire(admissionTimeoutMs, TimeUnit.MILLISECONDS)) {
+        throw new ServiceUnavailableException("Too many uploads in progress, please retry later");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ServiceUnavailableException("Upload interrupted");
+    }
   }
 
-  public Map<String, Object> uploadImage(MultipartFile file) throws IOException {
-    if (file.isEmpty()) {
+  @Override
+  public StoredMedia uploadImage(File file, String contentType) throws IOException {
+    if (file.length() == 0) {
       throw new IllegalArgumentException("File is empty");
     }
 
@@ -69,28 +128,87 @@ public class CloudinaryService {
             .height(500)
             .crop("limit"));
 
-    Map<String, Object> uploadResult = cloudinary.uploader().upload(file.getBytes(), uploadParams);
+    Map<String, Object> uploadResult = cloudinary.uploader().upload(file, uploadParams);
 
     log.info("Image uploaded: {}", uploadResult.get("secure_url"));
 
-    return uploadResult;
+    return toStoredMedia(uploadResult, IMAGE);
   }
 
-  public Map<String, Object> deleteFile(String publicId, String resourceType) throws IOException {
+  @Override
+  public void delete(String publicId, String resourceType) throws IOException {
     Map<String, Object> params = ObjectUtils.asMap(
         "resource_type", resourceType,
         "invalidate", true);
 
-    Map<String, Object> result = cloudinary.uploader().destroy(publicId, params);
+    cloudinary.uploader().destroy(publicId, params);
 
     log.info("File deleted: {}", publicId);
+  }
+
+  /**
+   * Admin API delete_resources, tối đa 100 public_id mỗi lần gọi. Kết quả từng id nằm trong
+   * map "deleted" ("deleted", "not_found" hoặc lỗi); batch gọi lỗi thì cả batch tính là failed.
+   */
+  @Override
+  public Map<String, String> deleteAll(List<String> publicIds, String resourceType) {
+    Map<String, String> failed = new LinkedHashMap<>();
+    for (int from = 0; from < publicIds.size(); from += DELETE_BATCH_SIZE) {
+      List<String> batch = publicIds.subList(from, Math.min(from + DELETE_BATCH_SIZE, publicIds.size()));
+      Map<?, ?> deleted;
+      try {
+        deleted = (Map<?, ?>) cloudinary.api().deleteResources(batch, ObjectUtils.asMap(
+            "resource_type", resourceType,
+            "invalidate", true)).get("deleted");
+      } catch (Exception e) {
+        batch.forEach(publicId -> failed.put(publicId, e.getMessage()));
+        continue;
+      }
+      int ok = 0;
+      for (String publicId : batch) {
+        Object status = deleted == null ? null : deleted.get(publicId);
+        if ("deleted".equals(status) || "not_found".equals(status)) {
+          ok++;
+        } else {
+          failed.put(publicId, "delete_resources: " + status);
+        }
+      }
+      log.info("Deleted {}/{} {} assets", ok, batch.size(), resourceType);
+    }
+    return failed;
+  }
+
+  @Override
+  public Map<String, Object> info(String publicId, String resourceType) throws IOException {
+    try {
+      return cloudinary.api().resource(
+          publicId,
+          ObjectUtils.asMap("resource_type", resourceType));
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e.getMessage(), e);
+    }
+  }
 
-    return result;
+  @Override
+  public String url(String publicId, String resourceType) {
+    return cloudinary.url().resourceType(resourceType).secure(true).generate(publicId);
   }
 
-  public Map<String, Object> getFileInfo(String publicId, String resourceType) throws Exception {
-    return cloudinary.api().resource(
-        publicId,
-        ObjectUtils.asMap("resource_type", resourceType));
+  private static StoredMedia toStoredMedia(Map<String, Object> result, String resourceType) {
+    Object duration = result.get("duration");
+    Object bytes = result.get("bytes");
+    return StoredMedia.builder()
+        .publicId((String) result.get("public_id"))
+        .fileUrl((String) result.get("secure_url"))
+        .thumbUrl((String) result.get("url"))
+        .format((String) result.get("format"))
+        .resourceType(resourceType)
+        .width((Integer) result.get("width"))
+        .height((Integer) result.get("height"))
+        .duration(duration instanceof Number ? ((Number) duration).doubleValue() : null)
+        .bytes(bytes instanceof Number ? ((Number) bytes).longValue() : null)
+        .build();
   }
 }
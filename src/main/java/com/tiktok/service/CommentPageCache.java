@@ -0,0 +1,280 @@
+package com.tiktok.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tiktok.dto.CommentDTO;
+import com.tiktok.dto.CursorPage;
+import com.tiktok.util.CacheMetrics;
+import com.tiktok.util.KeysetCursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Cache các trang comment đầu của video (comments.cache.pages trang mặc định), dạng DTO sẵn
+ * để serialize.
+ *
+ * Mỗi video giữ một đoạn đầu liên tục các comment gốc mới nhất kèm replies preview, nên mọi
+ * trang nằm trong đoạn này (kể cả trang có cursor, size bất kỳ) được trả từ bộ nhớ. Cache giới
+ * hạn theo tổng số comment (Caffeine, W-TinyLFU) nên chỉ video được đọc nhiều mới ở lại.
+ *
+ * Ghi là write-through sau commit: comment/reply mới, xóa và like được áp thẳng vào entry
+ * thay vì bỏ entry. Trường hợp không tự suy ra được (xóa một reply trong preview khi thread
+ * còn reply chưa hiển thị) thì entry bị bỏ. Entry được load lại sau comments.cache.ttl-seconds
+ * để sửa các sai lệch không đi qua CommentService (reconcile counter, đổi avatar/tên...).
+ */
+@Service
+public class CommentPageCache {
+
+    @Value("${comments.cache.pages:3}")
+    private int pages;
+
+    @Value("${comments.cache.max-comments:200000}")
+    private long maxComments;
+
+    @Value("${comments.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${comments.reply-preview-size:3}")
+    private int replyPreviewSize;
+
+    private Cache<Long, VideoComments> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxComments)
+                .weigher((Long videoId, VideoComments comments) -> comments.weight())
+                .expireAfterAccess(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Số comment gốc được giữ cho mỗi video
+     */
+    public int capacity() {
+        return pages * CursorPage.DEFAULT_SIZE;
+    }
+
+    /**
+     * Trang comment gốc từ cache, null nếu trang nằm ngoài đoạn đã cache (caller đọc DB).
+     * Trang đầu của video chưa có trong cache thì load đoạn đầu bằng loader(videoId, capacity),
+     * các request cùng video chờ một lần load duy nhất.
+     */
+    public CursorPage<CommentDTO> getPage(Long videoId, KeysetCursor before, int limit,
+                                          BiFunction<Long, Integer, CursorPage<CommentDTO>> loader) {
+        VideoComments comments = cache.getIfPresent(videoId);
+        if (comments != null && comments.isExpired(ttlSeconds)) {
+            cache.asMap().remove(videoId, comments);
+            comments = null;
+        }
+        if (comments == null && before == null) {
+            comments = cache.get(videoId, id -> new VideoComments(loader.apply(id, capacity()), capacity()));
+        }
+        CursorPage<CommentDTO> page = comments == null ? null : comments.page(before, limit);
+        (page == null ? misses : hits).increment();
+        return page;
+    }
+
+    public void onRootCreated(Long videoId, CommentDTO comment) {
+        update(videoId, comments -> comments.addRoot(comment));
+    }
+
+    public void onReplyCreated(Long videoId, Long parentId, CommentDTO reply) {
+        update(videoId, comments -> comments.addReply(parentId, reply, replyPreviewSize));
+    }
+
+    public void onCommentDeleted(Long videoId, Long commentId) {
+        update(videoId, comments -> comments.remove(commentId));
+    }
+
+    public void onLikesChanged(Long videoId, Long commentId, int delta) {
+        update(videoId, comments -> comments.addLikes(commentId, delta));
+    }
+
+    public void invalidate(Long videoId) {
+        cache.invalidate(videoId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * hits/misses tính theo trang comment được phục vụ, phần còn lại là thống kê của Caffeine
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = CacheMetrics.snapshot(cache);
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 1.0 : (double) hitCount / (hitCount + missCount));
+        return stats;
+    }
+
+    /**
+     * computeIfPresent chờ lần load đang chạy của cùng video và tính lại weight sau khi sửa.
+     * Trả về false nghĩa là entry không còn đúng và bị bỏ.
+     */
+    private void update(Long videoId, Predicate<VideoComments> change) {
+        cache.asMap().computeIfPresent(videoId, (id, comments) -> change.test(comments) ? comments : null);
+    }
+
+    private static String cursorOf(CommentDTO comment) {
+        return KeysetCursor.encode(comment.getCreatedAt(), comment.getId());
+    }
+
+    /**
+     * Đoạn đầu comment gốc của một video (mới nhất trước). complete = đoạn này là toàn bộ
+     * comment gốc của video.
+     */
+    private static final class VideoComments {
+        private final List<CommentDTO> roots;
+        private final Map<Long, CommentDTO> byId = new HashMap<>();
+        private final Map<Long, Long> parentOf = new HashMap<>();
+        private final int capacity;
+        private final long loadedAt = System.currentTimeMillis();
+        private boolean complete;
+        private int replyCount;
+
+        VideoComments(CursorPage<CommentDTO> firstRoots, int capacity) {
+            this.roots = new ArrayList<>(firstRoots.getItems());
+            this.capacity = capacity;
+            this.complete = firstRoots.getNextCursor() == null;
+            roots.forEach(this::index);
+        }
+
+        synchronized int weight() {
+            return 1 + roots.size() + replyCount;
+        }
+
+        boolean isExpired(long ttlSeconds) {
+            return System.currentTimeMillis() - loadedAt > ttlSeconds * 1000;
+        }
+
+        synchronized CursorPage<CommentDTO> page(KeysetCursor before, int limit) {
+            int from = 0;
+            if (before != null) {
+                while (from < roots.size() && !isOlder(roots.get(from), before)) {
+                    from++;
+                }
+            }
+            int available = roots.size() - from;
+            if (available < limit && !complete) {
+                return null;
+            }
+            int to = from + Math.min(limit, available);
+            List<CommentDTO> items = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                items.add(roots.get(i).copy());
+            }
+            // Chưa complete thì sau đoạn đã cache vẫn còn comment gốc
+            boolean hasMore = available > limit || !complete;
+            return new CursorPage<>(items, hasMore ? cursorOf(items.get(items.size() - 1)) : null);
+        }
+
+        synchronized boolean addRoot(CommentDTO comment) {
+            if (byId.containsKey(comment.getId())) {
+                return true;
+            }
+            roots.add(0, comment);
+            index(comment);
+            while (roots.size() > capacity) {
+                unindex(roots.remove(roots.size() - 1));
+                complete = false;
+            }
+            return true;
+        }
+
+        synchronized boolean addReply(Long parentId, CommentDTO reply, int previewSize) {
+            CommentDTO parent = byId.get(parentId);
+            if (parent == null || byId.containsKey(reply.getId())) {
+                return true;
+            }
+            parent.setRepliesCount(parent.getRepliesCount() + 1);
+            // Reply của reply không nằm trong cây comment gốc
+            if (parentOf.containsKey(parentId) || parent.getRepliesCursor() != null) {
+                return true;
+            }
+            List<CommentDTO> replies = parent.getReplies();
+            if (replies.size() < previewSize) {
+                replies.add(reply);
+                byId.put(reply.getId(), reply);
+                parentOf.put(reply.getId(), parentId);
+                replyCount++;
+            } else {
+                parent.setRepliesCursor(cursorOf(replies.get(replies.size() - 1)));
+            }
+            return true;
+        }
+
+        synchronized boolean remove(Long commentId) {
+            CommentDTO comment = byId.get(commentId);
+            if (comment == null) {
+                return true;
+            }
+            Long parentId = parentOf.get(commentId);
+            if (parentId == null) {
+                roots.remove(comment);
+                unindex(comment);
+                return true;
+            }
+            CommentDTO parent = byId.get(parentId);
+            if (parent.getRepliesCursor() != null) {
+                // Reply kế tiếp phải được kéo vào preview, load lại từ DB
+                return false;
+            }
+            parent.getReplies().remove(comment);
+            parent.setRepliesCount(Math.max(0, parent.getRepliesCount() - 1));
+            byId.remove(commentId);
+            parentOf.remove(commentId);
+            replyCount--;
+            return true;
+        }
+
+        synchronized boolean addLikes(Long commentId, int delta) {
+            CommentDTO comment = byId.get(commentId);
+            if (comment != null) {
+                comment.setLikesCount(Math.max(0, comment.getLikesCount() + delta));
+            }
+            return true;
+        }
+
+        private void index(CommentDTO root) {
+            byId.put(root.getId(), root);
+            for (CommentDTO reply : root.getReplies()) {
+                byId.put(reply.getId(), reply);
+                parentOf.put(reply.getId(), root.getId());
+                replyCount++;
+            }
+        }
+
+        private void unindex(CommentDTO root) {
+            byId.remove(root.getId());
+            for (CommentDTO reply : root.getReplies()) {
+                byId.remove(reply.getId());
+                parentOf.remove(reply.getId());
+                replyCount--;
+            }
+        }
+
+        // Thứ tự (createdAt DESC, id DESC) như KeysetCursor
+        private static boolean isOlder(CommentDTO comment, KeysetCursor before) {
+            int cmp = comment.getCreatedAt().compareTo(before.getCreatedAt());
+            return cmp < 0 || (cmp == 0 && comment.getId() < before.getId());
+        }
+    }
+}
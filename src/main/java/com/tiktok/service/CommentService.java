@@ -1,17 +1,32 @@
 package com.tiktok.service;
 
+import com.tiktok.dto.CommentDTO;
+import com.tiktok.dto.CursorPage;
+import com.tiktok.exception.BadRequestException;
 import com.tiktok.exception.ResourceNotFoundException;
 import com.tiktok.model.Comment;
+import com.tiktok.model.DeletionJob;
 import com.tiktok.model.User;
 import com.tiktok.model.Video;
+import com.tiktok.repository.CommentLikeRepository;
 import com.tiktok.repository.CommentRepository;
 import com.tiktok.repository.UserRepository;
 import com.tiktok.repository.VideoRepository;
+import com.tiktok.util.AfterCommit;
+import com.tiktok.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,16 +34,30 @@ import java.util.stream.Collectors;
 @Transactional
 public class CommentService {
     
+    public static final String SORT_NEWEST = "newest";
+    public static final String SORT_TOP = "top";
+    
     private final CommentRepository commentRepository;
+    private final CommentLikeRepository commentLikeRepository;
     private final VideoRepository videoRepository;
     private final UserRepository userRepository;
+    private final TrendingService trendingService;
+    private final CounterService counterService;
+    private final CommentPageCache commentPageCache;
+    private final TopCommentsService topCommentsService;
+    private final ContentDeletionService contentDeletionService;
+
+    @Value("${comments.reply-preview-size:3}")
+    private int replyPreviewSize;
     
     /**
      * Tạo comment mới cho video
      */
     public Comment createComment(Long videoId, Long userId, String content) {
-        Video video = videoRepository.findById(videoId)
-                .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + videoId));
+        if (!videoRepository.existsById(videoId)) {
+            throw new ResourceNotFoundException("Video not found with id: " + videoId);
+        }
+        Video video = videoRepository.getReferenceById(videoId);
         
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
@@ -42,8 +71,13 @@ public class CommentService {
         Comment savedComment = commentRepository.save(comment);
         
         // Tăng comments_count của video
-        video.setCommentsCount(video.getCommentsCount() + 1);
-        videoRepository.save(video);
+        counterService.add(CounterService.VIDEO_COMMENTS, videoId, 1);
+        CommentDTO dto = toDTO(savedComment);
+        AfterCommit.run(() -> {
+            trendingService.recordComment(videoId);
+            commentPageCache.onRootCreated(videoId, dto);
+            topCommentsService.recordComment(videoId, dto.getId(), dto.getCreatedAt());
+        });
         
         return savedComment;
     }
@@ -52,90 +86,237 @@ public class CommentService {
      * Tạo reply cho một comment
      */
     public Comment createReply(Long parentCommentId, Long userId, String content) {
-        Comment parentComment = commentRepository.findById(parentCommentId)
-                .orElseThrow(() -> new ResourceNotFoundException("Comment not found with id: " + parentCommentId));
+        CommentRepository.CommentRef parent = refOf(parentCommentId);
         
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
         
-        Video video = parentComment.getVideo();
+        Long videoId = parent.getVideoId();
         
         Comment reply = new Comment();
-        reply.setVideo(video);
+        reply.setVideo(videoRepository.getReferenceById(videoId));
         reply.setUser(user);
         reply.setContent(content);
-        reply.setParentComment(parentComment);
+        reply.setParentComment(commentRepository.getReferenceById(parentCommentId));
         
         Comment savedReply = commentRepository.save(reply);
         
-        // Tăng comments_count của video
-        video.setCommentsCount(video.getCommentsCount() + 1);
-        videoRepository.save(video);
+        // Tăng comments_count của video và replies_count của comment cha
+        counterService.add(CounterService.VIDEO_COMMENTS, videoId, 1);
+        counterService.add(CounterService.COMMENT_REPLIES, parentCommentId, 1);
+        CommentDTO dto = toDTO(savedReply);
+        AfterCommit.run(() -> {
+            trendingService.recordComment(videoId);
+            commentPageCache.onReplyCreated(videoId, parentCommentId, dto);
+            topCommentsService.recordReply(parent, 1);
+        });
         
         return savedReply;
     }
     
     /**
-     * Lấy tất cả comments của video (chỉ comment gốc, không bao gồm replies)
+     * Trang comment gốc của video theo sort (newest | top), kèm vài reply đầu của mỗi thread
      */
-    public List<Comment> getCommentsByVideoId(Long videoId) {
-        List<Comment> comments = commentRepository.findByVideoIdAndParentCommentIsNullOrderByCreatedAtDesc(videoId);
-        
-        // Load replies cho mỗi comment
-        return comments.stream()
-                .map(comment -> {
-                    List<Comment> replies = commentRepository.findByParentCommentIdOrderByCreatedAtAsc(comment.getId());
-                    comment.setReplies(replies);
-                    return comment;
-                })
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public CursorPage<CommentDTO> getComments(Long videoId, String sort, String cursor, int size, Long viewerId) {
+        if (SORT_TOP.equals(sort)) {
+            return getTopComments(videoId, cursor, size, viewerId);
+        }
+        if (!SORT_NEWEST.equals(sort)) {
+            throw new BadRequestException("Invalid sort: " + sort);
+        }
+        return getComments(videoId, cursor, size, viewerId);
     }
-    
+
     /**
-     * Like/Unlike comment
+     * Trang comment gốc của video (keyset theo createdAt, id) kèm vài reply đầu của mỗi thread.
+     * Các trang đầu được phục vụ từ CommentPageCache; ngoài đoạn đã cache thì đọc DB.
      */
-    public Comment likeComment(Long commentId, Long userId) {
-        Comment comment = commentRepository.findById(commentId)
+    @Transactional(readOnly = true)
+    public CursorPage<CommentDTO> getComments(Long videoId, String cursor, int size, Long viewerId) {
+        int limit = CursorPage.clampSize(size);
+        KeysetCursor before = cursor == null ? null : KeysetCursor.decode(cursor);
+        CursorPage<CommentDTO> page = commentPageCache.getPage(videoId, before, limit,
+                (id, capacity) -> loadRootPage(id, null, capacity));
+        if (page == null) {
+            page = loadRootPage(videoId, before, limit);
+        }
+        markLikedBy(page.getItems(), viewerId);
+        return page;
+    }
+
+    /**
+     * Top comment theo TopCommentsService (ranking in-memory), chỉ hydrate các id của trang
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CommentDTO> getTopComments(Long videoId, String cursor, int size, Long viewerId) {
+        CursorPage<Long> ids = topCommentsService.getPage(videoId, cursor, CursorPage.clampSize(size));
+        List<Comment> roots = new ArrayList<>(ids.getItems().size());
+        if (!ids.getItems().isEmpty()) {
+            Map<Long, Comment> byId = new HashMap<>();
+            commentRepository.findAllWithUserByIdIn(ids.getItems()).forEach(comment -> byId.put(comment.getId(), comment));
+            for (Long id : ids.getItems()) {
+                Comment comment = byId.get(id);
+                if (comment != null) {
+                    roots.add(comment);
+                }
+            }
+            attachReplies(roots);
+        }
+        CursorPage<CommentDTO> page = new CursorPage<>(
+                roots.stream().map(CommentService::toDTO).collect(Collectors.toList()), ids.getNextCursor());
+        markLikedBy(page.getItems(), viewerId);
+        return page;
+    }
+
+    /**
+     * Tổng cộng 2 query + 1 query batch cho tác giả của replies, thread được ghép trong bộ nhớ
+     */
+    private CursorPage<CommentDTO> loadRootPage(Long videoId, KeysetCursor before, int limit) {
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<Comment> roots;
+        if (before == null) {
+            roots = commentRepository.findRootPage(videoId, pageRequest);
+        } else {
+            roots = commentRepository.findRootPageBefore(videoId, before.getCreatedAt(), before.getId(), pageRequest);
+        }
+        CursorPage<Comment> page = CursorPage.of(roots, limit, CommentService::cursorOf);
+        attachReplies(page.getItems());
+        return page.map(CommentService::toDTO);
+    }
+
+    /**
+     * Tải thêm replies của một thread, cursor là reply cuối cùng đã hiển thị (repliesCursor)
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<CommentDTO> getReplies(Long commentId, String cursor, int size, Long viewerId) {
+        int limit = CursorPage.clampSize(size);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<Comment> replies;
+        if (cursor == null) {
+            replies = commentRepository.findReplyPage(commentId, pageRequest);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            replies = commentRepository.findReplyPageAfter(commentId, after.getCreatedAt(), after.getId(), pageRequest);
+        }
+        CursorPage<CommentDTO> page = CursorPage.of(replies, limit, CommentService::cursorOf).map(CommentService::toDTO);
+        markLikedBy(page.getItems(), viewerId);
+        return page;
+    }
+
+    private void attachReplies(List<Comment> roots) {
+        if (roots.isEmpty()) {
+            return;
+        }
+        Map<Long, Comment> byId = new HashMap<>();
+        roots.forEach(root -> byId.put(root.getId(), root));
+
+        // Lấy dư một reply mỗi thread để biết thread còn reply hay không
+        List<Comment> replies = commentRepository.findFirstRepliesByParentIds(byId.keySet(), replyPreviewSize + 1);
+        Map<Long, List<Comment>> byParent = new HashMap<>();
+        for (Comment reply : replies) {
+            Hibernate.initialize(reply.getUser());
+            byParent.computeIfAbsent(reply.getParentComment().getId(), id -> new ArrayList<>()).add(reply);
+        }
+        for (Comment root : roots) {
+            CursorPage<Comment> preview = CursorPage.of(
+                    byParent.getOrDefault(root.getId(), new ArrayList<>()), replyPreviewSize, CommentService::cursorOf);
+            root.setReplies(preview.getItems());
+            root.setRepliesCursor(preview.getNextCursor());
+        }
+    }
+
+    private CommentRepository.CommentRef refOf(Long commentId) {
+        return commentRepository.findRefById(commentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Comment not found with id: " + commentId));
-        
-        // Toggle like (logic đơn giản, có thể cải thiện bằng cách lưu vào bảng like_comment)
-        // Ở đây tạm thời chỉ tăng/giảm likesCount
-        comment.setLikesCount(comment.getLikesCount() + 1);
-        
-        return commentRepository.save(comment);
+    }
+
+    private static String cursorOf(Comment comment) {
+        return KeysetCursor.encode(comment.getCreatedAt(), comment.getId());
+    }
+
+    private static CommentDTO toDTO(Comment comment) {
+        List<CommentDTO> replies = new ArrayList<>(comment.getReplies().size());
+        comment.getReplies().forEach(reply -> replies.add(toDTO(reply)));
+        return new CommentDTO(
+                comment.getId(),
+                UserService.convertToSimpleDTO(comment.getUser()),
+                comment.getContent(),
+                comment.getLikesCount(),
+                comment.getRepliesCount(),
+                comment.getCreatedAt(),
+                comment.getIsLiked(),
+                replies,
+                comment.getRepliesCursor()
+        );
+    }
+
+    /**
+     * Like idempotent: trả về true nếu đây là like mới
+     */
+    public boolean likeComment(Long commentId, Long userId) {
+        CommentRepository.CommentRef comment = refOf(commentId);
+        if (commentLikeRepository.insertIgnore(userId, commentId) == 0) {
+            return false;
+        }
+        counterService.add(CounterService.COMMENT_LIKES, commentId, 1);
+        AfterCommit.run(() -> {
+            commentPageCache.onLikesChanged(comment.getVideoId(), commentId, 1);
+            topCommentsService.recordLike(comment, 1);
+        });
+        return true;
     }
     
     /**
-     * Unlike comment
+     * Unlike idempotent: trả về true nếu trước đó user đã like
      */
-    public Comment unlikeComment(Long commentId) {
-        Comment comment = commentRepository.findById(commentId)
-                .orElseThrow(() -> new ResourceNotFoundException("Comment not found with id: " + commentId));
-        
-        comment.setLikesCount(Math.max(0, comment.getLikesCount() - 1));
-        
-        return commentRepository.save(comment);
+    public boolean unlikeComment(Long commentId, Long userId) {
+        CommentRepository.CommentRef comment = refOf(commentId);
+        if (commentLikeRepository.deleteLike(userId, commentId) == 0) {
+            return false;
+        }
+        counterService.add(CounterService.COMMENT_LIKES, commentId, -1);
+        AfterCommit.run(() -> {
+            commentPageCache.onLikesChanged(comment.getVideoId(), commentId, -1);
+            topCommentsService.recordLike(comment, -1);
+        });
+        return true;
+    }
+
+    /**
+     * Comment kèm isLiked theo viewer
+     */
+    @Transactional(readOnly = true)
+    public CommentDTO getComment(Long commentId, Long viewerId) {
+        CommentDTO comment = toDTO(getCommentById(commentId));
+        markLikedBy(List.of(comment), viewerId);
+        return comment;
+    }
+
+    /**
+     * Gắn isLiked theo viewer cho cả trang comment (kể cả replies kèm theo) bằng một query IN.
+     * Chỉ gọi trên bản sao, không trên DTO đang nằm trong cache.
+     */
+    private void markLikedBy(List<CommentDTO> comments, Long viewerId) {
+        if (viewerId == null || comments.isEmpty()) {
+            return;
+        }
+        List<CommentDTO> all = new ArrayList<>();
+        for (CommentDTO comment : comments) {
+            all.add(comment);
+            all.addAll(comment.getReplies());
+        }
+        List<Long> commentIds = all.stream().map(CommentDTO::getId).collect(Collectors.toList());
+        Set<Long> liked = new HashSet<>(commentLikeRepository.findLikedCommentIds(viewerId, commentIds));
+        all.forEach(comment -> comment.setIsLiked(liked.contains(comment.getId())));
     }
     
     /**
-     * Xóa comment
+     * Xóa comment cùng toàn bộ reply ở background (ContentDeletionService)
      */
-    public void deleteComment(Long commentId) {
-        Comment comment = commentRepository.findById(commentId)
-                .orElseThrow(() -> new ResourceNotFoundException("Comment not found with id: " + commentId));
-        
-        Video video = comment.getVideo();
-        
-        // Đếm số replies sẽ bị xóa
-        Long repliesCount = commentRepository.countByParentCommentId(commentId);
-        
-        // Xóa comment và tất cả replies
-        commentRepository.delete(comment);
-        
-        // Giảm comments_count của video
-        int totalDeleted = 1 + repliesCount.intValue(); // 1 comment gốc + số replies
-        video.setCommentsCount(Math.max(0, video.getCommentsCount() - totalDeleted));
-        videoRepository.save(video);
+    public DeletionJob deleteComment(Long commentId) {
+        refOf(commentId);
+        return contentDeletionService.enqueue(DeletionJob.COMMENT, commentId);
     }
     
     /**
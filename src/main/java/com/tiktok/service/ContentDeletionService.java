@@ -0,0 +1,489 @@
+package com.tiktok.service;
+
+import com.tiktok.exception.ResourceNotFoundException;
+import com.tiktok.model.CommentLike;
+import com.tiktok.model.DeletionJob;
+import com.tiktok.model.Follow;
+import com.tiktok.repository.CommentLikeRepository;
+import com.tiktok.repository.CommentRepository;
+import com.tiktok.repository.DeletionJobRepository;
+import com.tiktok.repository.FollowRepository;
+import com.tiktok.repository.RefreshTokenRepository;
+import com.tiktok.repository.UserRepository;
+import com.tiktok.repository.VideoLikeRepository;
+import com.tiktok.repository.VideoRepository;
+import com.tiktok.util.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Xóa hàng loạt comment (cả thread), video và user cùng toàn bộ nội dung.
+ *
+ * Request chỉ tạo DeletionJob rồi trả 202. Worker xóa theo thứ tự phụ thuộc (like → reply →
+ * comment → video → follow → user), mỗi bước là các chunk "chọn tối đa deletion.jobs.chunk-size
+ * id, DELETE ... WHERE id IN (...)" trong transaction riêng, nghỉ deletion.jobs.chunk-pause-ms
+ * giữa các chunk để không giữ lock lâu hay dồn tải lên DB. Counter denormalized được trừ theo
+ * tổng của từng chunk (một UPDATE cho mỗi video/user/comment bị ảnh hưởng), không load entity.
+ *
+ * Mỗi chunk commit độc lập và bước nào cũng chọn lại từ phần còn lại, nên job lỗi giữa chừng
+ * được retry (backoff) hoặc worker khác claim lại khi lease hết hạn và chạy tiếp an toàn.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContentDeletionService {
+
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final DeletionJobRepository deletionJobRepository;
+    private final CommentRepository commentRepository;
+    private final CommentLikeRepository commentLikeRepository;
+    private final VideoRepository videoRepository;
+    private final VideoLikeRepository videoLikeRepository;
+    private final FollowRepository followRepository;
+    private final UserRepository userRepository;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final CounterService counterService;
+    private final MediaBlobService mediaBlobService;
+    private final CommentPageCache commentPageCache;
+    private final TopCommentsService topCommentsService;
+    private final VideoSearchIndex videoSearchIndex;
+    private final TrendingService trendingService;
+    private final FollowingTimelineService followingTimelineService;
+    private final FollowGraphCache followGraphCache;
+    private final UserSearchIndex userSearchIndex;
+    private final SearchSuggestService searchSuggestService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${deletion.jobs.workers:1}")
+    private int workers;
+
+    @Value("${deletion.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${deletion.jobs.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${deletion.jobs.chunk-pause-ms:20}")
+    private long chunkPauseMs;
+
+    @Value("${deletion.jobs.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${deletion.jobs.retry-base-delay-ms:5000}")
+    private long retryBaseDelayMs;
+
+    @Value("${deletion.jobs.lease-ms:300000}")
+    private long leaseMs;
+
+    private ThreadPoolExecutor executor;
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Tạo job xóa, worker xử lý sau khi commit. Target đã có job đang chờ/chạy thì trả job đó.
+     */
+    @Transactional
+    public DeletionJob enqueue(String targetType, Long targetId) {
+        DeletionJob active = deletionJobRepository.findFirstByTargetTypeAndTargetIdAndStatusIn(
+                targetType, targetId, List.of(DeletionJob.PENDING, DeletionJob.RUNNING)).orElse(null);
+        if (active != null) {
+            return active;
+        }
+        DeletionJob saved = deletionJobRepository.save(new DeletionJob(targetType, targetId));
+        AfterCommit.run(() -> dispatch(saved.getId()));
+        return saved;
+    }
+
+    @Transactional(readOnly = true)
+    public DeletionJob getJob(Long jobId) {
+        return deletionJobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Deletion job not found with id: " + jobId));
+    }
+
+    /**
+     * Lấy lại các job đến hạn retry hoặc có lease hết hạn
+     */
+    @Scheduled(fixedDelayString = "${deletion.jobs.poll-interval-ms:5000}")
+    public void pollDueJobs() {
+        int free = queueCapacity - executor.getQueue().size();
+        if (free <= 0) {
+            return;
+        }
+        try {
+            deletionJobRepository.findDueJobIds(LocalDateTime.now(), PageRequest.of(0, free))
+                    .forEach(this::dispatch);
+        } catch (RuntimeException e) {
+            log.error("Error polling deletion jobs: {}", e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(Long jobId) {
+        if (!queued.add(jobId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                queued.remove(jobId);
+                process(jobId);
+            });
+        } catch (RejectedExecutionException e) {
+            // Queue đầy: job vẫn PENDING trong DB, poller sẽ lấy lại sau
+            queued.remove(jobId);
+        }
+    }
+
+    private void process(Long jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (deletionJobRepository.claim(jobId, now, now.plus(leaseMs, ChronoUnit.MILLIS)) == 0) {
+            return; // Worker khác đã claim hoặc job chưa đến hạn
+        }
+        DeletionJob job = deletionJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        Progress progress = new Progress(job);
+        try {
+            if (DeletionJob.COMMENT.equals(job.getTargetType())) {
+                deleteComment(job.getTargetId(), progress);
+            } else if (DeletionJob.VIDEO.equals(job.getTargetType())) {
+                deleteVideos(List.of(job.getTargetId()), null, progress);
+            } else if (DeletionJob.USER.equals(job.getTargetType())) {
+                deleteUser(job.getTargetId(), progress);
+            } else {
+                throw new IllegalArgumentException("Unknown deletion target: " + job.getTargetType());
+            }
+
+            job.setStatus(DeletionJob.SUCCEEDED);
+            job.setDeletedRows(progress.deletedRows);
+            job.setLeaseUntil(null);
+            job.setError(null);
+            deletionJobRepository.save(job);
+            log.info("Deletion job {} ({} {}) finished, {} rows deleted",
+                    jobId, job.getTargetType(), job.getTargetId(), progress.deletedRows);
+        } catch (Exception e) {
+            job.setDeletedRows(progress.deletedRows);
+            fail(job, e);
+        }
+    }
+
+    private void deleteComment(Long commentId, Progress progress) {
+        if (!commentRepository.existsById(commentId)) {
+            return; // Đã xóa ở lần chạy trước
+        }
+        deleteCommentTrees(List.of(commentId), progress);
+    }
+
+    /**
+     * Xóa các comment cùng toàn bộ reply bên dưới (BFS theo parent_comment_id). Reply luôn có id
+     * lớn hơn comment cha nên xóa theo id giảm dần thì reply đi trước cha trong mọi chunk.
+     */
+    private void deleteCommentTrees(Collection<Long> rootIds, Progress progress) {
+        Map<Long, CommentRepository.CommentNode> nodes = new HashMap<>();
+        List<CommentRepository.CommentNode> level = commentRepository.findNodesByIdIn(rootIds);
+        while (!level.isEmpty()) {
+            List<Long> parentIds = new ArrayList<>(level.size());
+            for (CommentRepository.CommentNode node : level) {
+                if (nodes.putIfAbsent(node.getId(), node) == null) {
+                    parentIds.add(node.getId());
+                }
+            }
+            level = new ArrayList<>();
+            for (List<Long> part : partition(parentIds)) {
+                level.addAll(commentRepository.findChildNodes(part));
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(nodes.keySet());
+        ids.sort(Comparator.reverseOrder());
+        for (List<Long> chunk : partition(ids)) {
+            drain(progress, status -> {
+                List<Long> likeIds = commentLikeRepository.findIdChunkByCommentIdIn(chunk, chunkPage());
+                return likeIds.isEmpty() ? null : commentLikeRepository.deleteByIdIn(likeIds);
+            });
+            progress.chunkDone(transactionTemplate.execute(status -> deleteCommentChunk(chunk, nodes)));
+        }
+    }
+
+    private int deleteCommentChunk(List<Long> chunk, Map<Long, CommentRepository.CommentNode> nodes) {
+        Map<Long, Integer> perVideo = new HashMap<>();
+        Map<Long, Integer> perParent = new HashMap<>();
+        for (Long id : chunk) {
+            CommentRepository.CommentNode node = nodes.get(id);
+            perVideo.merge(node.getVideoId(), 1, Integer::sum);
+            // Cha cũng bị xóa thì không cần trừ replies_count
+            if (node.getParentId() != null && !nodes.containsKey(node.getParentId())) {
+                perParent.merge(node.getParentId(), 1, Integer::sum);
+            }
+        }
+        // Đọc trước khi xóa để ranking top comment trừ đúng từ counter hiện tại
+        List<CommentRepository.CommentRef> parents = perParent.isEmpty()
+                ? List.of() : commentRepository.findRefsByIdIn(perParent.keySet());
+
+        int deleted = commentRepository.deleteByIdIn(chunk);
+        subtract(CounterService.VIDEO_COMMENTS, perVideo);
+        subtract(CounterService.COMMENT_REPLIES, perParent);
+
+        AfterCommit.run(() -> {
+            for (Long id : chunk) {
+                CommentRepository.CommentNode node = nodes.get(id);
+                commentPageCache.onCommentDeleted(node.getVideoId(), id);
+                if (node.getParentId() == null) {
+                    topCommentsService.remove(node.getVideoId(), id);
+                }
+            }
+            parents.forEach(parent -> topCommentsService.recordReply(parent, -perParent.get(parent.getId())));
+        });
+        return deleted;
+    }
+
+    /**
+     * Xóa một nhóm video: like trên comment, comment, like của video, video_allows rồi row video.
+     * deletedUserId là chủ video đang bị xóa (không cần trừ tổng like của user đó).
+     */
+    private void deleteVideos(List<Long> videoIds, Long deletedUserId, Progress progress) {
+        List<VideoRepository.DeletionRow> videos = videoRepository.findDeletionRows(videoIds);
+        if (videos.isEmpty()) {
+            return;
+        }
+        List<Long> ids = videos.stream().map(VideoRepository.DeletionRow::getId).collect(Collectors.toList());
+        Map<Long, Long> owners = new HashMap<>();
+        videos.forEach(video -> owners.put(video.getId(), video.getOwnerId()));
+
+        drain(progress, status -> {
+            List<Long> likeIds = commentLikeRepository.findIdChunkByVideoIdIn(ids, chunkPage());
+            return likeIds.isEmpty() ? null : commentLikeRepository.deleteByIdIn(likeIds);
+        });
+        // Cả video bị xóa nên không cần trừ counter của comment/video
+        drain(progress, status -> {
+            List<Long> commentIds = commentRepository.findIdChunkByVideoIdIn(ids, chunkPage());
+            return commentIds.isEmpty() ? null : commentRepository.deleteByIdIn(commentIds);
+        });
+        drain(progress, status -> {
+            List<VideoLikeRepository.LikeRow> likes = videoLikeRepository.findChunkByVideoIdIn(ids, chunkPage());
+            if (likes.isEmpty()) {
+                return null;
+            }
+            Map<Long, Integer> perOwner = new HashMap<>();
+            for (VideoLikeRepository.LikeRow like : likes) {
+                Long ownerId = owners.get(like.getVideoId());
+                if (!ownerId.equals(deletedUserId)) {
+                    perOwner.merge(ownerId, 1, Integer::sum);
+                }
+            }
+            subtract(CounterService.USER_LIKES, perOwner);
+            return videoLikeRepository.deleteByIdIn(idsOf(likes, VideoLikeRepository.LikeRow::getId));
+        });
+
+        progress.chunkDone(transactionTemplate.execute(status -> {
+            int deleted = videoRepository.deleteAllowsByVideoIdIn(ids);
+            // Asset được xóa bởi AssetCleanupService khi hết tham chiếu
+            videos.stream()
+                    .filter(video -> video.getPublicId() != null)
+                    .forEach(video -> mediaBlobService.release(video.getPublicId(), MediaStorage.VIDEO));
+            return deleted + videoRepository.deleteByIdIn(ids);
+        }));
+
+        for (Long id : ids) {
+            videoSearchIndex.remove(id);
+            searchSuggestService.onVideoRemoved(id);
+            trendingService.remove(id);
+            commentPageCache.invalidate(id);
+            topCommentsService.invalidate(id);
+        }
+    }
+
+    private void deleteUser(Long userId, Progress progress) {
+        if (!userRepository.existsById(userId)) {
+            return; // Đã xóa ở lần chạy trước
+        }
+
+        // Comment của user trên video của người khác, kèm các reply vào những comment đó
+        List<Long> ids;
+        while (!(ids = commentRepository.findIdChunkByUserId(userId, chunkPage())).isEmpty()) {
+            deleteCommentTrees(ids, progress);
+        }
+        while (!(ids = videoRepository.findIdChunkByUserId(userId, chunkPage())).isEmpty()) {
+            deleteVideos(ids, userId, progress);
+        }
+
+        // Like user đã tim: trừ lại counter của comment/video/chủ video theo tổng mỗi chunk
+        drain(progress, status -> {
+            List<CommentLike> likes = commentLikeRepository.findChunkByUserId(userId, chunkPage());
+            if (likes.isEmpty()) {
+                return null;
+            }
+            Map<Long, Integer> perComment = new HashMap<>();
+            likes.forEach(like -> perComment.merge(like.getCommentId(), 1, Integer::sum));
+            subtract(CounterService.COMMENT_LIKES, perComment);
+            return commentLikeRepository.deleteByIdIn(idsOf(likes, CommentLike::getId));
+        });
+        drain(progress, status -> {
+            List<VideoLikeRepository.LikeRow> likes = videoLikeRepository.findChunkByUserId(userId, chunkPage());
+            if (likes.isEmpty()) {
+                return null;
+            }
+            Map<Long, Integer> perVideo = new HashMap<>();
+            Map<Long, Integer> perOwner = new HashMap<>();
+            for (VideoLikeRepository.LikeRow like : likes) {
+                perVideo.merge(like.getVideoId(), 1, Integer::sum);
+                if (like.getOwnerId() != null) {
+                    perOwner.merge(like.getOwnerId(), 1, Integer::sum);
+                }
+            }
+            subtract(CounterService.VIDEO_LIKES, perVideo);
+            subtract(CounterService.USER_LIKES, perOwner);
+            return videoLikeRepository.deleteByIdIn(idsOf(likes, VideoLikeRepository.LikeRow::getId));
+        });
+        drain(progress, status -> {
+            List<Follow> follows = followRepository.findChunkByUser(userId, chunkPage());
+            if (follows.isEmpty()) {
+                return null;
+            }
+            Map<Long, Integer> followers = new HashMap<>();
+            Map<Long, Integer> followings = new HashMap<>();
+            for (Follow follow : follows) {
+                if (follow.getFollowerId().equals(userId)) {
+                    followers.merge(follow.getFolloweeId(), 1, Integer::sum);
+                } else {
+                    followings.merge(follow.getFollowerId(), 1, Integer::sum);
+                }
+            }
+            subtract(CounterService.USER_FOLLOWERS, followers);
+            subtract(CounterService.USER_FOLLOWINGS, followings);
+            AfterCommit.run(() -> follows.forEach(follow ->
+                    followGraphCache.onUnfollow(follow.getFollowerId(), follow.getFolloweeId())));
+            return followRepository.deleteByIdIn(idsOf(follows, Follow::getId));
+        });
+
+        progress.chunkDone(transactionTemplate.execute(status ->
+                refreshTokenRepository.deleteByUserId(userId) + userRepository.deleteRow(userId)));
+        followingTimelineService.invalidate(userId);
+        followGraphCache.invalidate(userId);
+        userSearchIndex.remove(userId);
+        searchSuggestService.onUserRemoved(userId);
+    }
+
+    /**
+     * Chạy chunk cho đến khi hết dữ liệu (chunk trả về null), mỗi chunk một transaction
+     */
+    private void drain(Progress progress, TransactionCallback<Integer> chunk) {
+        Integer deleted;
+        while ((deleted = transactionTemplate.execute(chunk)) != null && deleted > 0) {
+            progress.chunkDone(deleted);
+        }
+    }
+
+    private void subtract(String counter, Map<Long, Integer> deltas) {
+        deltas.forEach((id, count) -> counterService.add(counter, id, -count));
+    }
+
+    private PageRequest chunkPage() {
+        return PageRequest.of(0, chunkSize);
+    }
+
+    private List<List<Long>> partition(List<Long> ids) {
+        List<List<Long>> parts = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            parts.add(ids.subList(from, Math.min(ids.size(), from + chunkSize)));
+        }
+        return parts;
+    }
+
+    private static <T> List<Long> idsOf(List<T> rows, Function<T, Long> id) {
+        return rows.stream().map(id).collect(Collectors.toList());
+    }
+
+    private void fail(DeletionJob job, Exception e) {
+        job.setError(e.getMessage());
+        job.setLeaseUntil(null);
+        if (job.getAttempts() >= maxAttempts) {
+            job.setStatus(DeletionJob.FAILED);
+            log.error("Deletion job {} failed after {} attempts: {}", job.getId(), job.getAttempts(), e.getMessage(), e);
+        } else {
+            long delay = backoffMillis(job.getAttempts());
+            job.setStatus(DeletionJob.PENDING);
+            job.setNextAttemptAt(LocalDateTime.now().plus(delay, ChronoUnit.MILLIS));
+            log.warn("Deletion job {} attempt {} failed, retrying in {} ms: {}",
+                    job.getId(), job.getAttempts(), delay, e.getMessage());
+        }
+
+        try {
+            deletionJobRepository.save(job);
+        } catch (RuntimeException saveError) {
+            // Job giữ trạng thái RUNNING, sẽ được claim lại khi lease hết hạn
+            log.error("Error saving deletion job {}: {}", job.getId(), saveError.getMessage(), saveError);
+        }
+    }
+
+    private long backoffMillis(int attempts) {
+        long delay = retryBaseDelayMs << Math.min(Math.max(attempts - 1, 0), 20);
+        delay = Math.min(delay, MAX_BACKOFF_MS);
+        // Jitter 0-20% để các job lỗi cùng lúc không retry cùng lúc
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    /**
+     * Tiến độ của job đang chạy: cộng số row đã xóa, gia hạn lease và nghỉ giữa các chunk
+     */
+    private final class Progress {
+        private final Long jobId;
+        private long deletedRows;
+
+        Progress(DeletionJob job) {
+            this.jobId = job.getId();
+            this.deletedRows = job.getDeletedRows();
+        }
+
+        void chunkDone(Integer deleted) {
+            deletedRows += deleted == null ? 0 : deleted;
+            LocalDateTime now = LocalDateTime.now();
+            deletionJobRepository.updateProgress(jobId, deletedRows, now.plus(leaseMs, ChronoUnit.MILLIS), now);
+            if (chunkPauseMs > 0) {
+                try {
+                    Thread.sleep(chunkPauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.tiktok.service;
+
+import com.tiktok.repository.CommentRepository;
+import com.tiktok.repository.UserRepository;
+import com.tiktok.repository.VideoRepository;
+import com.tiktok.util.DeltaBuffer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+
+/**
+ * Counter denormalized (likes/comments của video, likes/followers/followings của user,
+ * likes/replies của comment).
+ *
+ * Mỗi thay đổi là một UPDATE "x = x + :delta" (không read-modify-write). Row lạnh được
+ * cập nhật ngay trong transaction của caller; row nóng (đã được ghi trong cửa sổ
+ * counters.flush-interval-ms hiện tại) thì delta được gom trong bộ nhớ sau commit và
+ * flush một lần mỗi cửa sổ, nên video viral không bị tranh chấp lock trên một row. Delta gom
+ * được đánh dấu "đang chờ" ngay khi add() (trước khi caller commit) cho tới khi vào buffer
+ * hoặc bị bỏ do rollback.
+ *
+ * Job reconcile định kỳ tính lại toàn bộ counter từ bảng nguồn theo từng khoảng id,
+ * chạy song song, để sửa sai lệch (delta mất khi crash, dữ liệu cũ...). Flush không chạy
+ * xen giữa một khoảng id đang reconcile, và row có delta chờ flush được bỏ qua (kiểm tra lại
+ * ngay trong transaction của khoảng id đó) để delta không bị cộng hai lần.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CounterService {
+
+    public static final String VIDEO_LIKES = "video.likes";
+    public static final String VIDEO_COMMENTS = "video.comments";
+    public static final String USER_LIKES = "user.likes";
+    public static final String USER_FOLLOWERS = "user.followers";
+    public static final String USER_FOLLOWINGS = "user.followings";
+    public static final String COMMENT_LIKES = "comment.likes";
+    public static final String COMMENT_REPLIES = "comment.replies";
+
+    private final VideoRepository videoRepository;
+    private final UserRepository userRepository;
+    private final CommentRepository commentRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${counters.reconcile-chunk-size:5000}")
+    private long reconcileChunkSize;
+
+    @Value("${counters.reconcile-parallelism:4}")
+    private int reconcileParallelism;
+
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    // flush giữ write lock, mỗi khoảng id đang reconcile giữ read lock
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private ExecutorService reconcileExecutor;
+
+    @PostConstruct
+    void init() {
+        counters.put(VIDEO_LIKES, new Counter(videoRepository::addLikesCount));
+        counters.put(VIDEO_COMMENTS, new Counter(videoRepository::addCommentsCount));
+        counters.put(USER_LIKES, new Counter(userRepository::addLikesCount));
+        counters.put(USER_FOLLOWERS, new Counter(userRepository::addFollowersCount));
+        counters.put(USER_FOLLOWINGS, new Counter(userRepository::addFollowingsCount));
+        counters.put(COMMENT_LIKES, new Counter(commentRepository::addLikesCount));
+        counters.put(COMMENT_REPLIES, new Counter(commentRepository::addRepliesCount));
+        reconcileExecutor = Executors.newFixedThreadPool(reconcileParallelism);
+    }
+
+    /**
+     * Cộng delta vào counter của một row. Gọi trong transaction đã ghi bảng nguồn
+     * (video_likes, comments, follows) để counter đi cùng commit/rollback.
+     */
+    public void add(String name, Long id, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        Counter counter = counterOf(name);
+        if (counter.markWritten(id)) {
+            counter.writer.apply(id, delta);
+        } else if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            counter.buffer.add(id, delta);
+        } else {
+            // Reconcile thấy id này là pending kể cả khi bảng nguồn đã commit mà afterCommit chưa chạy
+            counter.beginInFlight(id);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            counter.buffer.add(id, delta);
+                        }
+                    } finally {
+                        counter.endInFlight(id);
+                    }
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${counters.flush-interval-ms:500}")
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            flushAll();
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void flushAll() {
+        counters.forEach((name, counter) -> {
+            counter.newWindow();
+            Map<Long, Long> deltas = counter.buffer.drain();
+            if (deltas.isEmpty()) {
+                counter.buffer.completeFlush();
+                return;
+            }
+            try {
+                // Sắp xếp theo id để các lần flush luôn lock row theo cùng thứ tự
+                transactionTemplate.executeWithoutResult(status -> new TreeMap<>(deltas).forEach((id, delta) ->
+                        counter.writer.apply(id, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, delta)))));
+                counter.buffer.completeFlush();
+            } catch (DataAccessException e) {
+                log.error("Error flushing counter {}, will retry: {}", name, e.getMessage(), e);
+                counter.buffer.requeue(deltas);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        reconcileExecutor.shutdownNow();
+    }
+
+    /**
+     * Tính lại counter của videos, users và comments từ bảng nguồn, mỗi khoảng id một transaction
+     */
+    @Scheduled(initialDelayString = "${counters.reconcile-interval-ms:3600000}",
+               fixedDelayString = "${counters.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        flush();
+        long started = System.currentTimeMillis();
+        int videos = reconcileTable(videoRepository.findIdRange(),
+                List.of(VIDEO_LIKES, VIDEO_COMMENTS), videoRepository::reconcileCounts);
+        int users = reconcileTable(userRepository.findIdRange(),
+                List.of(USER_LIKES, USER_FOLLOWERS, USER_FOLLOWINGS), userRepository::reconcileCounts);
+        int comments = reconcileTable(commentRepository.findIdRange(),
+                List.of(COMMENT_LIKES, COMMENT_REPLIES), commentRepository::reconcileCounts);
+        log.info("Reconciled counters of {} videos, {} users and {} comments in {} ms",
+                videos, users, comments, System.currentTimeMillis() - started);
+    }
+
+    private int reconcileTable(List<Object[]> idRange, List<String> names, ChunkReconciler reconciler) {
+        if (idRange.isEmpty() || idRange.get(0)[0] == null) {
+            return 0;
+        }
+        long minId = ((Number) idRange.get(0)[0]).longValue();
+        long maxId = ((Number) idRange.get(0)[1]).longValue();
+
+        List<Future<Integer>> chunks = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += reconcileChunkSize) {
+            long fromId = from;
+            long toId = Math.min(maxId, from + reconcileChunkSize - 1);
+            chunks.add(reconcileExecutor.submit(() -> reconcileChunk(fromId, toId, names, reconciler)));
+        }
+
+        int updated = 0;
+        for (Future<Integer> chunk : chunks) {
+            try {
+                updated += chunk.get();
+            } catch (ExecutionException e) {
+                log.error("Error reconciling counters: {}", e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Reconcile một khoảng id trong khi flush bị chặn. Row có delta chờ flush hoặc của transaction
+     * chưa xong (đã đánh dấu từ add()) được bỏ qua và sẽ được sửa ở lần reconcile sau; nếu có id
+     * mới như vậy xuất hiện trong lúc UPDATE chạy thì rollback và chạy lại với danh sách bỏ qua mới.
+     */
+    private int reconcileChunk(long fromId, long toId, List<String> names, ChunkReconciler reconciler) {
+        flushLock.readLock().lock();
+        try {
+            Set<Long> skip = pendingIds(names, fromId, toId);
+            while (true) {
+                Set<Long> excluded = skip;
+                Set<Long> pendingAfter = new HashSet<>();
+                Integer updated = transactionTemplate.execute(status -> {
+                    int count = reconciler.reconcile(fromId, toId, excluded.isEmpty() ? Set.of(-1L) : excluded);
+                    pendingAfter.addAll(pendingIds(names, fromId, toId));
+                    if (excluded.containsAll(pendingAfter)) {
+                        return count;
+                    }
+                    status.setRollbackOnly();
+                    return null;
+                });
+                if (updated != null) {
+                    return updated;
+                }
+                skip = new HashSet<>(excluded);
+                skip.addAll(pendingAfter);
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    private Set<Long> pendingIds(List<String> names, long fromId, long toId) {
+        Set<Long> ids = new HashSet<>();
+        for (String name : names) {
+            Counter counter = counterOf(name);
+            Set<Long> pending = new HashSet<>(counter.inFlight.keySet());
+            pending.addAll(counter.buffer.pendingIds());
+            for (Long id : pending) {
+                if (id >= fromId && id <= toId) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Counter counterOf(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            throw new IllegalArgumentException("Unknown counter: " + name);
+        }
+        return counter;
+    }
+
+    @FunctionalInterface
+    private interface ChunkReconciler {
+        int reconcile(Long fromId, Long toId, Set<Long> excludedIds);
+    }
+
+    private static final class Counter {
+        final BiFunction<Long, Integer, Integer> writer;
+        final DeltaBuffer buffer = new DeltaBuffer();
+        // Các id đã được ghi thẳng xuống DB trong cửa sổ hiện tại
+        volatile Set<Long> writtenInWindow = ConcurrentHashMap.newKeySet();
+        // Số transaction chưa xong đang giữ delta gom của từng id
+        final ConcurrentHashMap<Long, Integer> inFlight = new ConcurrentHashMap<>();
+
+        Counter(BiFunction<Long, Integer, Integer> writer) {
+            this.writer = writer;
+        }
+
+        boolean markWritten(Long id) {
+            return writtenInWindow.add(id);
+        }
+
+        void newWindow() {
+            writtenInWindow = ConcurrentHashMap.newKeySet();
+        }
+
+        void beginInFlight(Long id) {
+            inFlight.merge(id, 1, Integer::sum);
+        }
+
+        void endInFlight(Long id) {
+            inFlight.computeIfPresent(id, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+}
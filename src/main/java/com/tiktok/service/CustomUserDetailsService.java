@@ -21,9 +21,14 @@ public class CustomUserDetailsService implements UserDetailsService {
     User user = userRepository.findByEmail(email)
         .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
 
+    boolean enabled = !Boolean.TRUE.equals(user.getDisabled());
     return new org.springframework.security.core.userdetails.User(
         user.getEmail(),
         user.getPassword(),
+        enabled,
+        true,
+        true,
+        true,
         new ArrayList<>());
   }
 }
\ No newline at end of file
@@ -0,0 +1,318 @@
+package com.tiktok.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tiktok.dto.CursorPage;
+import com.tiktok.exception.BadRequestException;
+import com.tiktok.repository.FollowRepository;
+import com.tiktok.util.CacheMetrics;
+import com.tiktok.util.CursorCodec;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Cache đồ thị follow: danh sách following và followers của từng user dạng long[] đã sắp xếp.
+ *
+ * Mỗi danh sách là một mảng nền bất biến cộng hai delta nhỏ (id vừa thêm / vừa bỏ, cũng sắp
+ * xếp) nhận các follow/unfollow sau commit; delta vượt follows.cache.delta-size thì được gộp
+ * vào mảng nền. Kiểm tra "đã follow" là binary search O(log n), trang danh sách là merge giảm
+ * dần theo id user bắt đầu từ cursor.
+ *
+ * Cache giới hạn theo tổng số id đang giữ (follows.cache.max-edges, Caffeine). Danh sách dài
+ * hơn follows.cache.max-list-size (vd. followers của celebrity) không được nạp vào bộ nhớ mà
+ * đọc thẳng từ DB theo index của bảng follows.
+ */
+@Service
+@RequiredArgsConstructor
+public class FollowGraphCache {
+
+    private final FollowRepository followRepository;
+
+    @Value("${follows.cache.max-edges:5000000}")
+    private long maxEdges;
+
+    @Value("${follows.cache.max-list-size:100000}")
+    private int maxListSize;
+
+    @Value("${follows.cache.delta-size:64}")
+    private int deltaSize;
+
+    @Value("${follows.cache.idle-minutes:30}")
+    private long idleMinutes;
+
+    // Key = userId * 2 + 1 cho followers, userId * 2 cho following
+    private Cache<Long, Adjacency> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxEdges)
+                .weigher((Long key, Adjacency adjacency) -> adjacency.weight())
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+    }
+
+    public boolean isFollowing(Long followerId, Long followeeId) {
+        return !followedAmong(followerId, List.of(followeeId)).isEmpty();
+    }
+
+    /**
+     * Các user trong userIds mà followerId đang follow, dùng để gắn isFollowed cho cả trang
+     */
+    public Set<Long> followedAmong(Long followerId, Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Set.of();
+        }
+        Adjacency following = adjacencyOf(followerId, false);
+        if (following.oversized) {
+            return new HashSet<>(followRepository.findFolloweeIdsIn(followerId, userIds));
+        }
+        Set<Long> followed = new HashSet<>();
+        for (Long userId : userIds) {
+            if (userId != null && following.contains(userId)) {
+                followed.add(userId);
+            }
+        }
+        return followed;
+    }
+
+    /**
+     * Trang id follower, id user giảm dần, cursor là id cuối trang trước
+     */
+    public CursorPage<Long> getFollowers(Long userId, String cursor, int limit) {
+        return page(userId, true, cursor, limit);
+    }
+
+    public CursorPage<Long> getFollowing(Long userId, String cursor, int limit) {
+        return page(userId, false, cursor, limit);
+    }
+
+    /**
+     * Gọi sau khi follow mới được commit
+     */
+    public void onFollow(Long followerId, Long followeeId) {
+        update(followerId, false, adjacency -> adjacency.add(followeeId));
+        update(followeeId, true, adjacency -> adjacency.add(followerId));
+    }
+
+    public void onUnfollow(Long followerId, Long followeeId) {
+        update(followerId, false, adjacency -> adjacency.remove(followeeId));
+        update(followeeId, true, adjacency -> adjacency.remove(followerId));
+    }
+
+    public void invalidate(Long userId) {
+        cache.invalidate(keyOf(userId, false));
+        cache.invalidate(keyOf(userId, true));
+    }
+
+    public Map<String, Object> stats() {
+        return CacheMetrics.snapshot(cache);
+    }
+
+    private CursorPage<Long> page(Long userId, boolean followers, String cursor, int limit) {
+        long beforeId = cursor == null ? Long.MAX_VALUE : decodeCursor(cursor);
+        Adjacency adjacency = adjacencyOf(userId, followers);
+        List<Long> ids;
+        if (adjacency.oversized) {
+            ids = load(userId, followers, beforeId, limit + 1);
+        } else {
+            ids = new ArrayList<>(limit + 1);
+            adjacency.collectBefore(beforeId, limit + 1, ids);
+        }
+        return CursorPage.of(ids, limit, id -> CursorCodec.encode(id));
+    }
+
+    private Adjacency adjacencyOf(Long userId, boolean followers) {
+        return cache.get(keyOf(userId, followers), key -> {
+            List<Long> ids = load(userId, followers, Long.MAX_VALUE, maxListSize + 1);
+            return ids.size() > maxListSize ? Adjacency.OVERSIZED : new Adjacency(ids, deltaSize);
+        });
+    }
+
+    private List<Long> load(Long userId, boolean followers, long beforeId, int limit) {
+        PageRequest pageRequest = PageRequest.of(0, limit);
+        return followers
+                ? followRepository.findFollowerIdsBefore(userId, beforeId, pageRequest)
+                : followRepository.findFolloweeIdsBefore(userId, beforeId, pageRequest);
+    }
+
+    /**
+     * computeIfPresent chờ lần load đang chạy của cùng key và tính lại weight sau khi sửa.
+     * Danh sách chưa có trong cache thì bỏ qua, lần đọc sau sẽ nạp từ DB.
+     */
+    private void update(Long userId, boolean followers, Consumer<Adjacency> change) {
+        cache.asMap().computeIfPresent(keyOf(userId, followers), (key, adjacency) -> {
+            change.accept(adjacency);
+            return adjacency;
+        });
+    }
+
+    private static long keyOf(long userId, boolean followers) {
+        return userId * 2 + (followers ? 1 : 0);
+    }
+
+    private static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(CursorCodec.decode(cursor, 1)[0]);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Danh sách kề của một user: mảng nền sắp xếp tăng dần + delta thêm/bỏ
+     */
+    private static final class Adjacency {
+        static final Adjacency OVERSIZED = new Adjacency();
+
+        final boolean oversized;
+        private final int deltaLimit;
+        private long[] base;
+        private final SortedLongs added = new SortedLongs();
+        private final SortedLongs removed = new SortedLongs();
+
+        private Adjacency() {
+            this.oversized = true;
+            this.deltaLimit = 0;
+            this.base = new long[0];
+        }
+
+        /**
+         * ids giảm dần như kết quả query
+         */
+        Adjacency(List<Long> ids, int deltaLimit) {
+            this.oversized = false;
+            this.deltaLimit = deltaLimit;
+            this.base = new long[ids.size()];
+            for (int i = 0; i < base.length; i++) {
+                base[i] = ids.get(base.length - 1 - i);
+            }
+        }
+
+        synchronized int weight() {
+            return 1 + base.length + added.values.length + removed.values.length;
+        }
+
+        synchronized boolean contains(long id) {
+            if (removed.indexOf(id) >= 0) {
+                return false;
+            }
+            return added.indexOf(id) >= 0 || Arrays.binarySearch(base, id) >= 0;
+        }
+
+        synchronized void add(long id) {
+            if (oversized) {
+                return;
+            }
+            if (!removed.delete(id) && Arrays.binarySearch(base, id) < 0) {
+                added.insert(id);
+            }
+            compactIfNeeded();
+        }
+
+        synchronized void remove(long id) {
+            if (oversized) {
+                return;
+            }
+            if (!added.delete(id) && Arrays.binarySearch(base, id) >= 0) {
+                removed.insert(id);
+            }
+            compactIfNeeded();
+        }
+
+        /**
+         * Tối đa max id nhỏ hơn beforeId, giảm dần
+         */
+        synchronized void collectBefore(long beforeId, int max, List<Long> out) {
+            int i = lowerIndex(base, base.length, beforeId);
+            int j = lowerIndex(added.values, added.size, beforeId);
+            while (out.size() < max && (i >= 0 || j >= 0)) {
+                long next = j < 0 || (i >= 0 && base[i] > added.values[j]) ? base[i--] : added.values[j--];
+                if (removed.indexOf(next) < 0) {
+                    out.add(next);
+                }
+            }
+        }
+
+        private void compactIfNeeded() {
+            if (added.size + removed.size <= deltaLimit) {
+                return;
+            }
+            long[] merged = new long[base.length + added.size - removed.size];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < base.length || j < added.size) {
+                long next = j >= added.size || (i < base.length && base[i] < added.values[j])
+                        ? base[i++] : added.values[j++];
+                if (removed.indexOf(next) < 0) {
+                    merged[n++] = next;
+                }
+            }
+            base = merged;
+            added.clear();
+            removed.clear();
+        }
+
+        // Vị trí phần tử lớn nhất nhỏ hơn bound, -1 nếu không có
+        private static int lowerIndex(long[] values, int size, long bound) {
+            int pos = Arrays.binarySearch(values, 0, size, bound);
+            return (pos >= 0 ? pos : -pos - 1) - 1;
+        }
+    }
+
+    /**
+     * Tập long nhỏ sắp xếp tăng dần trên mảng primitive
+     */
+    private static final class SortedLongs {
+        long[] values = new long[0];
+        int size;
+
+        int indexOf(long value) {
+            return size == 0 ? -1 : Arrays.binarySearch(values, 0, size, value);
+        }
+
+        void insert(long value) {
+            int pos = Arrays.binarySearch(values, 0, size, value);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, size * 2));
+            }
+            System.arraycopy(values, pos, values, pos + 1, size - pos);
+            values[pos] = value;
+            size++;
+        }
+
+        boolean delete(long value) {
+            int pos = indexOf(value);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(values, pos + 1, values, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+
+        void clear() {
+            values = new long[0];
+            size = 0;
+        }
+    }
+}
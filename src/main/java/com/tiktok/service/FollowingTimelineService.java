@@ -0,0 +1,267 @@
+package com.tiktok.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tiktok.dto.CursorPage;
+import com.tiktok.exception.BadRequestException;
+import com.tiktok.model.Video;
+import com.tiktok.repository.FollowRepository;
+import com.tiktok.repository.UserRepository;
+import com.tiktok.repository.VideoRepository;
+import com.tiktok.util.CacheMetrics;
+import com.tiktok.util.CursorCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeline "Following" kiểu fan-out-on-write.
+ *
+ * - Mỗi follower đang hoạt động có một buffer id video (sắp xếp, giới hạn timeline.capacity),
+ *   được đẩy id mới khi followee đăng video (chạy trên executor riêng, sau commit).
+ * - Followee có từ timeline.celebrity-threshold follower trở lên không fan-out;
+ *   video của họ được merge lúc đọc bằng một query IN giới hạn limit.
+ * - Buffer được dựng lần đầu khi user đọc timeline (cold start), hết hạn sau
+ *   timeline.ttl-minutes và bị bỏ khi user follow/unfollow.
+ * - Buffer chỉ lớn dần theo số id thực có; cache giới hạn theo tổng số id đang giữ
+ *   (timeline.max-ids, Caffeine) thay vì số user, nên bộ nhớ bị chặn kể cả khi capacity lớn.
+ *
+ * Cursor là id video cuối trang trước (id tăng dần theo thời gian đăng).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FollowingTimelineService {
+
+    private final FollowRepository followRepository;
+    private final UserRepository userRepository;
+    private final VideoRepository videoRepository;
+
+    @Value("${timeline.capacity:500}")
+    private int capacity;
+
+    @Value("${timeline.celebrity-threshold:10000}")
+    private int celebrityThreshold;
+
+    @Value("${timeline.max-ids:2000000}")
+    private long maxIds;
+
+    @Value("${timeline.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private Cache<Long, Timeline> timelines;
+
+    private final ThreadPoolExecutor fanOutExecutor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(10_000),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    @PostConstruct
+    void init() {
+        timelines = Caffeine.newBuilder()
+                .maximumWeight(maxIds)
+                .weigher((Long userId, Timeline timeline) -> timeline.weight())
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gọi sau khi video mới được commit
+     */
+    public void onVideoCreated(Video video) {
+        if (!"public".equals(video.getViewable())) {
+            return;
+        }
+        Long ownerId = video.getUser().getId();
+        Long videoId = video.getId();
+        fanOutExecutor.execute(() -> fanOut(ownerId, videoId));
+    }
+
+    /**
+     * Bỏ buffer của user để lần đọc sau dựng lại theo danh sách follow mới
+     */
+    public void invalidate(Long userId) {
+        timelines.invalidate(userId);
+    }
+
+    public Map<String, Object> stats() {
+        return CacheMetrics.snapshot(timelines);
+    }
+
+    public CursorPage<Long> getPage(Long userId, String cursor, int limit) {
+        long beforeId = cursor == null ? Long.MAX_VALUE : decodeCursor(cursor);
+        Timeline timeline = timelineOf(userId);
+
+        List<Long> ids = new ArrayList<>(limit + 1);
+        timeline.collectBefore(beforeId, limit + 1, ids);
+        if (!timeline.celebrityIds.isEmpty()) {
+            ids.addAll(videoRepository.findPublicVideoIdsByUserIdsBefore(
+                    timeline.celebrityIds, beforeId, PageRequest.of(0, limit + 1)));
+            ids.sort(Collections.reverseOrder());
+            if (ids.size() > limit + 1) {
+                ids = ids.subList(0, limit + 1);
+            }
+        }
+        return CursorPage.of(ids, limit, id -> CursorCodec.encode(id));
+    }
+
+    /**
+     * Hydrate một trang id thành video, giữ thứ tự và bỏ video đã xóa/ẩn
+     */
+    public List<Video> loadVideos(List<Long> videoIds) {
+        if (videoIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Video> byId = new HashMap<>();
+        for (Video video : videoRepository.findAllById(videoIds)) {
+            if ("public".equals(video.getViewable())) {
+                byId.put(video.getId(), video);
+            }
+        }
+        List<Video> videos = new ArrayList<>(byId.size());
+        for (Long id : videoIds) {
+            Video video = byId.get(id);
+            if (video != null) {
+                videos.add(video);
+            }
+        }
+        return videos;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanOutExecutor.shutdown();
+    }
+
+    private void fanOut(Long ownerId, Long videoId) {
+        try {
+            if (!userRepository.findIdsWithFollowersAtLeast(List.of(ownerId), celebrityThreshold).isEmpty()) {
+                return;
+            }
+            // Chỉ đẩy vào buffer đang có trong bộ nhớ, user chưa có buffer sẽ được dựng khi đọc
+            // computeIfPresent để Caffeine tính lại weight sau khi buffer lớn thêm
+            for (Long followerId : followRepository.findFollowerIds(ownerId)) {
+                timelines.asMap().computeIfPresent(followerId, (id, timeline) -> {
+                    if (!timeline.celebrityIds.contains(ownerId)) {
+                        timeline.push(videoId);
+                    }
+                    return timeline;
+                });
+            }
+        } catch (RuntimeException e) {
+            log.error("Error fanning out video {} of user {}: {}", videoId, ownerId, e.getMessage(), e);
+        }
+    }
+
+    private Timeline timelineOf(Long userId) {
+        Timeline timeline = timelines.getIfPresent(userId);
+        if (timeline != null && !timeline.isExpired(ttlMinutes)) {
+            return timeline;
+        }
+
+        List<Long> followeeIds = followRepository.findFolloweeIds(userId);
+        Set<Long> celebrityIds = followeeIds.isEmpty()
+                ? Collections.emptySet()
+                : new HashSet<>(userRepository.findIdsWithFollowersAtLeast(followeeIds, celebrityThreshold));
+        List<Long> regularIds = new ArrayList<>(followeeIds);
+        regularIds.removeAll(celebrityIds);
+
+        Timeline built = new Timeline(capacity, celebrityIds);
+        if (!regularIds.isEmpty()) {
+            built.pushAll(videoRepository.findPublicVideoIdsByUserIdsBefore(
+                    regularIds, Long.MAX_VALUE, PageRequest.of(0, capacity)));
+        }
+
+        timelines.put(userId, built);
+        return built;
+    }
+
+    private static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(CursorCodec.decode(cursor, 1)[0]);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Buffer id video tăng dần, cấp phát theo số id thực có (nhân đôi tới capacity), đầy thì
+     * bỏ id cũ nhất
+     */
+    private static final class Timeline {
+        private static final int INITIAL_SIZE = 16;
+
+        private final int capacity;
+        private long[] ids = new long[0];
+        private int size;
+        final Set<Long> celebrityIds;
+        final long builtAt = System.currentTimeMillis();
+
+        Timeline(int capacity, Set<Long> celebrityIds) {
+            this.capacity = capacity;
+            this.celebrityIds = celebrityIds;
+        }
+
+        boolean isExpired(long ttlMinutes) {
+            return System.currentTimeMillis() - builtAt > TimeUnit.MINUTES.toMillis(ttlMinutes);
+        }
+
+        synchronized int weight() {
+            return 1 + ids.length + celebrityIds.size();
+        }
+
+        synchronized void push(long id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            int insertAt = -pos - 1;
+            if (size == ids.length && size < capacity) {
+                ids = Arrays.copyOf(ids, Math.min(capacity, Math.max(INITIAL_SIZE, size * 2)));
+            }
+            if (size == ids.length) {
+                if (insertAt == 0) {
+                    return; // cũ hơn mọi id đang giữ
+                }
+                System.arraycopy(ids, 1, ids, 0, insertAt - 1);
+                ids[insertAt - 1] = id;
+                return;
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        synchronized void pushAll(List<Long> videoIds) {
+            videoIds.forEach(this::push);
+        }
+
+        /**
+         * Thêm tối đa max id nhỏ hơn beforeId, từ mới đến cũ
+         */
+        synchronized void collectBefore(long beforeId, int max, List<Long> out) {
+            int pos = Arrays.binarySearch(ids, 0, size, beforeId);
+            int start = (pos >= 0 ? pos : -pos - 1) - 1;
+            for (int i = start; i >= 0 && out.size() < max; i--) {
+                out.add(ids[i]);
+            }
+        }
+    }
+}
@@ -1,80 +1,67 @@
 package com.tiktok.service;
 
+import com.tiktok.model.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
 
 @Service
 public class JwtService {
 
+  public static final String CLAIM_USER_ID = "uid";
+  public static final String CLAIM_ROLES = "roles";
+  public static final String CLAIM_TOKEN_VERSION = "ver";
+  public static final String ROLE_USER = "ROLE_USER";
+
   @Value("${jwt.secret}")
   private String secret;
 
   @Value("${jwt.expiration}")
   private Long jwtExpiration;
 
-  public String extractUsername(String token) {
-    return extractClaim(token, Claims::getSubject);
-  }
-
-  public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-    final Claims claims = extractAllClaims(token);
-    return claimsResolver.apply(claims);
-  }
+  private volatile Key signInKey;
 
-  public String generateToken(UserDetails userDetails) {
-    return generateToken(new HashMap<>(), userDetails);
+  /**
+   * Access token mang sẵn user id, roles và token version để filter không phải load user
+   */
+  public String generateToken(User user) {
+    return generateToken(new HashMap<>(), user);
   }
 
-  public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
-    return buildToken(extraClaims, userDetails, jwtExpiration);
+  public String generateToken(Map<String, Object> extraClaims, User user) {
+    Map<String, Object> claims = new HashMap<>(extraClaims);
+    claims.put(CLAIM_USER_ID, user.getId());
+    claims.put(CLAIM_ROLES, List.of(ROLE_USER));
+    claims.put(CLAIM_TOKEN_VERSION, user.getTokenVersion() == null ? 0 : user.getTokenVersion());
+    return buildToken(claims, user.getEmail(), jwtExpiration);
   }
 
   private String buildToken(
       Map<String, Object> extraClaims,
-      UserDetails userDetails,
+      String subject,
       long expiration) {
     return Jwts.builder()
         .setClaims(extraClaims)
-        .setSubject(userDetails.getUsername())
+        .setSubject(subject)
         .setIssuedAt(new Date(System.currentTimeMillis()))
         .setExpiration(new Date(System.currentTimeMillis() + expiration))
         .signWith(getSignInKey(), SignatureAlgorithm.HS256)
         .compact();
   }
 
-  public boolean isTokenValid(String token, UserDetails userDetails) {
-    final String username = extractUsername(token);
-    return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
-  }
-
-  private boolean isTokenExpired(String token) {
-    return extractExpiration(token).before(new Date());
-  }
-
-  private Date extractExpiration(String token) {
-    return extractClaim(token, Claims::getExpiration);
-  }
-
-  private Claims extractAllClaims(String token) {
-    return Jwts.parserBuilder()
-        .setSigningKey(getSignInKey())
-        .build()
-        .parseClaimsJws(token)
-        .getBody();
-  }
-
+  // Key chỉ decode một lần, token được xác thực bởi JwtVerifier
   private Key getSignInKey() {
-    byte[] keyBytes = Decoders.BASE64.decode(secret);
-    return Keys.hmacShaKeyFor(keyBytes);
+    if (signInKey == null) {
+      signInKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+    }
+    return signInKey;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,188 @@
+package com.tiktok.service;
+
+import com.tiktok.dto.StoredMedia;
+import com.tiktok.util.ContentHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * MediaStorage trên đĩa local (media.storage=local), dùng cho load test offline
+ * hoặc node tự phục vụ media.
+ *
+ * File được lưu theo nội dung: publicId = sha256 + "." + đuôi, nằm ở
+ * root-dir/ab/cd/&lt;publicId&gt; (2 cấp thư mục theo 4 ký tự hex đầu) để mỗi thư mục
+ * không có quá nhiều file. Cùng nội dung thì cùng file.
+ */
+@Service
+@ConditionalOnProperty(name = "media.storage", havingValue = "local")
+@Slf4j
+public class LocalMediaStorage implements MediaStorage {
+
+    private static final Pattern PUBLIC_ID = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,10})?");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${media.local.root-dir:${java.io.tmpdir}/tiktok-media}")
+    private String rootDir;
+
+    @Value("${media.local.base-url:/media}")
+    private String baseUrl;
+
+    private Path root;
+
+    @PostConstruct
+    void init() throws IOException {
+        root = Files.createDirectories(Paths.get(rootDir)).toAbsolutePath();
+        log.info("Local media storage at {}", root);
+    }
+
+    @Override
+    public StoredMedia uploadVideo(File file, String contentType, ProgressListener progress) throws IOException {
+        if (file.length() == 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (contentType == null || !contentType.startsWith("video/")) {
+            throw new IllegalArgumentException("File must be a video");
+        }
+        StoredMedia media = store(file, contentType, VIDEO, progress);
+        // Không có transcoder, thumbnail dùng chính file video
+        media.setThumbUrl(media.getFileUrl());
+        log.info("Video stored: {}", media.getPublicId());
+        return media;
+    }
+
+    @Override
+    public StoredMedia uploadImage(File file, String contentType) throws IOException {
+        if (file.length() == 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (contentType == null || !contentType.startsWith("image/")) {
+            throw new IllegalArgumentException("File must be an image");
+        }
+        StoredMedia media = store(file, contentType, IMAGE, null);
+        log.info("Image stored: {}", media.getPublicId());
+        return media;
+    }
+
+    @Override
+    public void delete(String publicId, String resourceType) throws IOException {
+        Files.deleteIfExists(resolve(publicId));
+        log.info("File deleted: {}", publicId);
+    }
+
+    @Override
+    public Map<String, Object> info(String publicId, String resourceType) throws IOException {
+        Path path = resolve(publicId);
+        Map<String, Object> info = new HashMap<>();
+        info.put("public_id", publicId);
+        info.put("resource_type", resourceType);
+        info.put("bytes", Files.size(path));
+        info.put("format", extensionOf(publicId));
+        info.put("url", url(publicId, resourceType));
+        info.put("created_at", Files.getLastModifiedTime(path).toString());
+        return info;
+    }
+
+    @Override
+    public String url(String publicId, String resourceType) {
+        return baseUrl + "/" + publicId;
+    }
+
+    /**
+     * Đường dẫn file của publicId, từ chối id không đúng định dạng (chặn path traversal)
+     */
+    public Path resolve(String publicId) {
+        if (publicId == null || !PUBLIC_ID.matcher(publicId).matches()) {
+            throw new IllegalArgumentException("Invalid media id: " + publicId);
+        }
+        return root.resolve(publicId.substring(0, 2)).resolve(publicId.substring(2, 4)).resolve(publicId);
+    }
+
+    /**
+     * Copy vào file tạm trong root (cùng filesystem) đồng thời tính sha256,
+     * rồi move atomic về vị trí theo hash
+     */
+    private StoredMedia store(File file, String contentType, String resourceType, ProgressListener progress)
+            throws IOException {
+        long total = file.length();
+        MessageDigest digest = ContentHash.newDigest();
+        Path incoming = Files.createTempFile(root, "incoming-", ".tmp");
+        try {
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file.toPath()), digest);
+                 OutputStream out = Files.newOutputStream(incoming)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long copied = 0;
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                    copied += n;
+                    if (progress != null) {
+                        progress.onProgress(copied, total);
+                    }
+                }
+            }
+
+            String format = extensionFor(contentType);
+            String publicId = ContentHash.toHex(digest.digest()) + (format.isEmpty() ? "" : "." + format);
+            Path target = resolve(publicId);
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(incoming, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Nội dung đã tồn tại
+            }
+
+            return StoredMedia.builder()
+                    .publicId(publicId)
+                    .fileUrl(url(publicId, resourceType))
+                    .format(format)
+                    .resourceType(resourceType)
+                    .bytes(total)
+                    .build();
+        } finally {
+            Files.deleteIfExists(incoming);
+        }
+    }
+
+    private static String extensionFor(String contentType) {
+        int slash = contentType.indexOf('/');
+        String subtype = contentType.substring(slash + 1).toLowerCase();
+        int param = subtype.indexOf(';');
+        if (param >= 0) {
+            subtype = subtype.substring(0, param).trim();
+        }
+        switch (subtype) {
+            case "jpeg":
+                return "jpg";
+            case "quicktime":
+                return "mov";
+            case "x-matroska":
+                return "mkv";
+            default:
+                String ext = subtype.replaceAll("[^a-z0-9]", "");
+                return ext.length() > 10 ? ext.substring(0, 10) : ext;
+        }
+    }
+
+    private static String extensionOf(String publicId) {
+        int dot = publicId.indexOf('.');
+        return dot < 0 ? "" : publicId.substring(dot + 1);
+    }
+}
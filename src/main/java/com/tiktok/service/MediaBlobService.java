@@ -0,0 +1,141 @@
+package com.tiktok.service;
+
+import com.tiktok.dto.StoredMedia;
+import com.tiktok.model.MediaBlob;
+import com.tiktok.repository.MediaBlobRepository;
+import com.tiktok.util.ContentHash;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+/**
+ * Upload có khử trùng lặp theo nội dung.
+ *
+ * Trước khi upload, sha256 của file được tra trong media_blobs: trùng thì dùng lại asset
+ * (URL, định dạng, kích thước) và tăng refCount, không upload/transcode lại. release()
+ * giảm refCount và chỉ xóa asset trên MediaStorage khi tham chiếu cuối cùng bị bỏ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaBlobService {
+
+    private final MediaBlobRepository mediaBlobRepository;
+    private final MediaStorage mediaStorage;
+    private final AssetCleanupService assetCleanupService;
+
+    public StoredMedia storeVideo(File file, String contentType, MediaStorage.ProgressListener progress)
+            throws IOException {
+        return store(file.toPath(), ContentHash.sha256(file.toPath()), contentType, MediaStorage.VIDEO, progress);
+    }
+
+    /**
+     * Spool ảnh ra file tạm, tính sha256 ngay trong lúc copy
+     */
+    public StoredMedia storeImage(MultipartFile file) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        MessageDigest digest = ContentHash.newDigest();
+        Path spooled = Files.createTempFile("image-upload-", ".tmp");
+        try {
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return store(spooled, ContentHash.toHex(digest.digest()), file.getContentType(),
+                    MediaStorage.IMAGE, null);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    /**
+     * Bỏ một tham chiếu tới asset, chạy trong transaction của caller. UPDATE giữ row lock
+     * đến khi commit nên upload trùng nội dung chạy song song sẽ chờ rồi thấy blob đã bị
+     * xóa và upload lại từ đầu. Asset hết tham chiếu (hoặc chưa từng qua media_blobs, tức
+     * upload trước khi có dedup) được đưa vào outbox để AssetCleanupService xóa sau.
+     */
+    @Transactional
+    public void release(String publicId, String resourceType) {
+        if (mediaBlobRepository.release(publicId, resourceType) == 0
+                || mediaBlobRepository.deleteUnreferenced(publicId, resourceType) > 0) {
+            assetCleanupService.enqueue(publicId, resourceType);
+        } else {
+            log.info("Released reference to {}, asset is still in use", publicId);
+        }
+    }
+
+    private StoredMedia store(Path file, String sha256, String contentType, String resourceType,
+                              MediaStorage.ProgressListener progress) throws IOException {
+        StoredMedia existing = retain(sha256, resourceType);
+        if (existing != null) {
+            log.info("Reusing {} {} for duplicate upload", resourceType, existing.getPublicId());
+            return existing;
+        }
+
+        StoredMedia uploaded = MediaStorage.VIDEO.equals(resourceType)
+                ? mediaStorage.uploadVideo(file.toFile(), contentType, progress)
+                : mediaStorage.uploadImage(file.toFile(), contentType);
+        try {
+            mediaBlobRepository.save(toBlob(sha256, contentType, uploaded));
+            return uploaded;
+        } catch (DataIntegrityViolationException e) {
+            // Upload song song cùng nội dung đã ghi blob trước: dùng blob đó, bỏ bản vừa upload
+            StoredMedia winner = retain(sha256, resourceType);
+            if (winner == null) {
+                throw e;
+            }
+            if (!winner.getPublicId().equals(uploaded.getPublicId())) {
+                assetCleanupService.enqueue(uploaded.getPublicId(), uploaded.getResourceType());
+            }
+            return winner;
+        }
+    }
+
+    private StoredMedia retain(String sha256, String resourceType) {
+        MediaBlob blob = mediaBlobRepository.findBySha256AndResourceType(sha256, resourceType).orElse(null);
+        if (blob == null || mediaBlobRepository.retain(blob.getId()) == 0) {
+            return null;
+        }
+        return StoredMedia.builder()
+                .publicId(blob.getPublicId())
+                .fileUrl(blob.getFileUrl())
+                .thumbUrl(blob.getThumbUrl())
+                .format(blob.getFormat())
+                .resourceType(blob.getResourceType())
+                .width(blob.getWidth())
+                .height(blob.getHeight())
+                .duration(blob.getDuration())
+                .bytes(blob.getBytes())
+                .build();
+    }
+
+    private static MediaBlob toBlob(String sha256, String contentType, StoredMedia media) {
+        MediaBlob blob = new MediaBlob();
+        blob.setSha256(sha256);
+        blob.setResourceType(media.getResourceType());
+        blob.setPublicId(media.getPublicId());
+        blob.setFileUrl(media.getFileUrl());
+        blob.setThumbUrl(media.getThumbUrl());
+        blob.setFormat(media.getFormat());
+        blob.setMimeType(contentType);
+        blob.setWidth(media.getWidth());
+        blob.setHeight(media.getHeight());
+        blob.setDuration(media.getDuration());
+        blob.setBytes(media.getBytes());
+        return blob;
+    }
+
+}
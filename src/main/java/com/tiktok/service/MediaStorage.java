@@ -0,0 +1,54 @@
+package com.tiktok.service;
+
+import com.tiktok.dto.StoredMedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Backend lưu trữ media (video, ảnh). Chọn implementation bằng media.storage:
+ * cloudinary (mặc định, CloudinaryService) hoặc local (LocalMediaStorage).
+ */
+public interface MediaStorage {
+
+    String VIDEO = "video";
+    String IMAGE = "image";
+
+    @FunctionalInterface
+    interface ProgressListener {
+        void onProgress(long uploadedBytes, long totalBytes);
+    }
+
+    /**
+     * Upload video từ file trên đĩa, progress có thể null
+     */
+    StoredMedia uploadVideo(File file, String contentType, ProgressListener progress) throws IOException;
+
+    StoredMedia uploadImage(File file, String contentType) throws IOException;
+
+    void delete(String publicId, String resourceType) throws IOException;
+
+    /**
+     * Xóa nhiều asset cùng loại, backend có API xóa hàng loạt thì override.
+     *
+     * @return public_id xóa không thành công kèm lý do (rỗng nếu xóa hết)
+     */
+    default Map<String, String> deleteAll(List<String> publicIds, String resourceType) throws IOException {
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (String publicId : publicIds) {
+            try {
+                delete(publicId, resourceType);
+            } catch (IOException e) {
+                failed.put(publicId, e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    Map<String, Object> info(String publicId, String resourceType) throws IOException;
+
+    String url(String publicId, String resourceType);
+}
@@ -0,0 +1,222 @@
+package com.tiktok.service;
+
+import com.tiktok.exception.BadRequestException;
+import com.tiktok.exception.ResourceNotFoundException;
+import com.tiktok.model.UploadJob;
+import com.tiktok.model.UploadSession;
+import com.tiktok.repository.UploadSessionRepository;
+import com.tiktok.repository.UserRepository;
+import com.tiktok.util.ByteRanges;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Upload resumable: initiate -> PUT chunk theo offset -> GET các khoảng đã nhận -> complete.
+ *
+ * File đích được preallocate đúng kích thước, mỗi chunk được ghi thẳng từ request body
+ * vào vị trí offset bằng FileChannel (không buffer cả chunk trên heap). Chunk bị đứt giữa
+ * chừng vẫn giữ phần đã ghi, client chỉ cần gửi lại phần còn thiếu.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResumableUploadService {
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UserRepository userRepository;
+    private final UploadJobService uploadJobService;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${upload.resumable.max-file-size:1073741824}")
+    private long maxFileSize;
+
+    @Value("${upload.resumable.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${upload.resumable.retention-hours:72}")
+    private long retentionHours;
+
+    @Transactional
+    public UploadSession initiate(Long userId, long fileSize, String contentType, String description,
+                                  String music, String viewable, String type) throws IOException {
+        if (fileSize <= 0 || fileSize > maxFileSize) {
+            throw new BadRequestException("File size must be between 1 and " + maxFileSize + " bytes");
+        }
+        if (contentType == null || !contentType.startsWith("video/")) {
+            throw new BadRequestException("File must be a video");
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with id: " + userId);
+        }
+
+        String sessionId = UUID.randomUUID().toString();
+        Path target = uploadJobService.getSpoolDir().resolve("resumable-" + sessionId);
+        // Preallocate (sparse) để các chunk ghi vào đúng vị trí theo thứ tự bất kỳ
+        try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+            file.setLength(fileSize);
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(sessionId);
+        session.setUserId(userId);
+        session.setFileSize(fileSize);
+        session.setContentType(contentType);
+        session.setFilePath(target.toString());
+        session.setDescription(description);
+        session.setMusic(music);
+        session.setViewable(viewable);
+        session.setType(type);
+        session.setExpiresAt(LocalDateTime.now().plusHours(ttlHours));
+        try {
+            return uploadSessionRepository.save(session);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public UploadSession getSession(String sessionId) {
+        return uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Upload session not found with id: " + sessionId));
+    }
+
+    /**
+     * Ghi một chunk vào offset. Phần đã ghi được (kể cả khi client ngắt giữa chừng)
+     * được ghi nhận vào received_ranges.
+     */
+    public UploadSession writeChunk(String sessionId, Long userId, long offset, long length,
+                                    InputStream body) throws IOException {
+        UploadSession session = requireOpen(requireOwner(getSession(sessionId), userId));
+        if (offset < 0 || length <= 0 || offset + length > session.getFileSize()) {
+            throw new BadRequestException("Chunk [" + offset + ", " + (offset + length)
+                    + ") is outside the file size " + session.getFileSize());
+        }
+
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(session.getFilePath()), StandardOpenOption.WRITE)) {
+            ReadableByteChannel source = Channels.newChannel(body);
+            while (written < length) {
+                long n = channel.transferFrom(source, offset + written, length - written);
+                if (n <= 0) {
+                    break; // Client đóng kết nối sớm
+                }
+                written += n;
+            }
+            channel.force(false);
+        } finally {
+            if (written > 0) {
+                session = recordRange(sessionId, offset, offset + written);
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Kiểm tra đã nhận đủ file rồi chuyển sang pipeline UploadJob (upload lên storage + tạo video)
+     */
+    @Transactional
+    public UploadJob complete(String sessionId, Long userId) {
+        UploadSession session = requireOwner(lockSession(sessionId), userId);
+        if (UploadSession.COMPLETED.equals(session.getStatus())) {
+            return uploadJobService.getJob(session.getJobId());
+        }
+        requireOpen(session);
+        if (!ByteRanges.covers(session.getReceivedRanges(), session.getFileSize())) {
+            throw new BadRequestException("Upload is incomplete: received " + session.getReceivedBytes()
+                    + " of " + session.getFileSize() + " bytes");
+        }
+
+        UploadJob job = uploadJobService.submitSpooled(Paths.get(session.getFilePath()), session.getFileSize(),
+                session.getContentType(), session.getUserId(), session.getDescription(), session.getMusic(),
+                session.getViewable(), session.getType());
+        session.setStatus(UploadSession.COMPLETED);
+        session.setJobId(job.getId());
+        uploadSessionRepository.save(session);
+        return job;
+    }
+
+    /**
+     * Dọn các phiên quá hạn chưa complete cùng file tạm của chúng, và row của các phiên đã
+     * complete quá upload.resumable.retention-hours sau khi hết hạn (complete gọi lại trong
+     * khoảng này vẫn trả về job cũ)
+     */
+    @Scheduled(fixedDelayString = "${upload.resumable.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void cleanupExpired() {
+        List<UploadSession> expired = uploadSessionRepository.findExpired(LocalDateTime.now());
+        for (UploadSession session : expired) {
+            try {
+                Files.deleteIfExists(Paths.get(session.getFilePath()));
+            } catch (IOException e) {
+                log.warn("Could not delete upload session file {}: {}", session.getFilePath(), e.getMessage());
+            }
+        }
+        uploadSessionRepository.deleteAll(expired);
+        int completed = uploadSessionRepository.deleteCompletedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (!expired.isEmpty() || completed > 0) {
+            log.info("Removed {} expired and {} completed upload sessions", expired.size(), completed);
+        }
+    }
+
+    private UploadSession recordRange(String sessionId, long start, long end) {
+        return transactionTemplate.execute(status -> {
+            UploadSession locked = lockSession(sessionId);
+            locked.setRangesData(ByteRanges.format(ByteRanges.add(locked.getReceivedRanges(), start, end)));
+            return uploadSessionRepository.save(locked);
+        });
+    }
+
+    /**
+     * Đọc lại session từ DB với SELECT ... FOR UPDATE. Dùng refresh thay vì query có lock
+     * vì entity có thể đã nằm trong persistence context (open-in-view) với received_ranges cũ.
+     */
+    private UploadSession lockSession(String sessionId) {
+        UploadSession session = getSession(sessionId);
+        entityManager.refresh(session, LockModeType.PESSIMISTIC_WRITE);
+        return session;
+    }
+
+    // Không tiết lộ phiên của user khác tồn tại
+    private UploadSession requireOwner(UploadSession session, Long userId) {
+        if (!session.getUserId().equals(userId)) {
+            throw new ResourceNotFoundException("Upload session not found with id: " + session.getId());
+        }
+        return session;
+    }
+
+    private UploadSession requireOpen(UploadSession session) {
+        if (!UploadSession.OPEN.equals(session.getStatus())) {
+            throw new BadRequestException("Upload session is already completed");
+        }
+        if (session.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new BadRequestException("Upload session has expired");
+        }
+        return session;
+    }
+}
@@ -0,0 +1,503 @@
+package com.tiktok.service;
+
+import com.tiktok.dto.SuggestionDTO;
+import com.tiktok.model.User;
+import com.tiktok.model.Video;
+import com.tiktok.repository.UserRepository;
+import com.tiktok.repository.VideoRepository;
+import com.tiktok.util.TextFolding;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Gợi ý search-as-you-type từ nickname user, tên nhạc và từ trong description video.
+ *
+ * - Trie theo text đã fold (TextFolding), mỗi node giữ sẵn top-k gợi ý có trọng số cao nhất
+ *   trong cây con, nên trả gợi ý chỉ là đi theo prefix rồi đọc mảng top của node cuối.
+ * - Trọng số: nickname theo followersCount (tick x2), tên nhạc và từ theo tổng mức tương tác
+ *   của các video public dùng chúng.
+ * - Cập nhật incremental từ UserService/VideoService/ContentDeletionService sau commit: khi
+ *   trọng số một gợi ý đổi, chỉ các node trên đường đi của nó có thể đổi top-k và việc tính
+ *   lại dừng ở node đầu tiên không bị ảnh hưởng. Rebuild định kỳ để làm mới số follower và
+ *   tương tác, thay đổi trong lúc rebuild được ghi journal rồi replay như VideoSearchIndex.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchSuggestService {
+
+    public static final String USER = "user";
+    public static final String MUSIC = "music";
+    public static final String TERM = "term";
+
+    private static final int MAX_KEY_LENGTH = 48;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_VIDEO_TERMS = 32;
+    private static final long REBUILD_CHUNK = 10_000;
+
+    private static final Comparator<Entry> BY_WEIGHT = Comparator
+            .comparingDouble((Entry entry) -> entry.weight).reversed()
+            .thenComparing(entry -> entry.key)
+            .thenComparing(entry -> entry.type);
+
+    private final UserRepository userRepository;
+    private final VideoRepository videoRepository;
+
+    @Value("${search.suggest.top-k:10}")
+    private int topK;
+
+    private final Object writeLock = new Object();
+    private volatile IndexState state;
+    private volatile boolean ready;
+    private List<Consumer<IndexState>> journal; // khác null khi đang rebuild, guarded by writeLock
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void onUserChanged(User user) {
+        Long id = user.getId();
+        String nickname = user.getNickname();
+        double weight = userWeight(user.getFollowersCount(), user.getTick());
+        apply(index -> index.putUser(id, nickname, weight));
+    }
+
+    public void onUserRemoved(Long userId) {
+        apply(index -> index.removeUser(userId));
+    }
+
+    public void onVideoChanged(Video video) {
+        Long id = video.getId();
+        Contribution contribution = Contribution.of(video.getViewable(), video.getDescription(), video.getMusic(),
+                video.getLikesCount(), video.getCommentsCount(), video.getSharesCount(), video.getViewsCount());
+        apply(index -> index.putVideo(id, contribution));
+    }
+
+    public void onVideoRemoved(Long videoId) {
+        apply(index -> index.removeVideo(videoId));
+    }
+
+    /**
+     * Tối đa limit gợi ý bắt đầu bằng prefix (không phân biệt dấu), trọng số giảm dần
+     */
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        IndexState index = state;
+        if (key.isEmpty() || limit <= 0 || index == null) {
+            return Collections.emptyList();
+        }
+        index.lock.readLock().lock();
+        try {
+            Node node = index.root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.child(key.charAt(i));
+            }
+            if (node == null) {
+                return Collections.emptyList();
+            }
+            int count = Math.min(limit, node.top.length);
+            List<SuggestionDTO> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                suggestions.add(new SuggestionDTO(node.top[i].display, node.top[i].type));
+            }
+            return suggestions;
+        } finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${search.suggest.rebuild-initial-delay-ms:0}",
+            fixedDelayString = "${search.suggest.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        IndexState next = new IndexState(topK);
+        synchronized (writeLock) {
+            if (state == null) {
+                state = new IndexState(topK);
+            }
+            journal = new ArrayList<>();
+        }
+        try {
+            Long maxUserId = userRepository.findMaxId();
+            if (maxUserId != null) {
+                for (long from = 0; from < maxUserId; from += REBUILD_CHUNK) {
+                    for (UserRepository.SearchRow row : userRepository.findSearchRows(from, Math.min(from + REBUILD_CHUNK, maxUserId))) {
+                        next.putUser(row.getId(), row.getNickname(), userWeight(row.getFollowersCount(), row.getTick()));
+                    }
+                }
+            }
+            Long maxVideoId = videoRepository.findMaxId();
+            if (maxVideoId != null) {
+                for (long from = 0; from < maxVideoId; from += REBUILD_CHUNK) {
+                    for (VideoRepository.SearchRow row : videoRepository.findSearchRows(from, Math.min(from + REBUILD_CHUNK, maxVideoId))) {
+                        next.putVideo(row.getId(), Contribution.of(row.getViewable(), row.getDescription(), row.getMusic(),
+                                row.getLikesCount(), row.getCommentsCount(), row.getSharesCount(), row.getViewsCount()));
+                    }
+                }
+            }
+
+            synchronized (writeLock) {
+                journal.forEach(op -> op.accept(next));
+                journal = null;
+                state = next;
+                ready = true;
+            }
+            log.info("Search suggestions rebuilt: {} suggestions in {} ms",
+                    next.entries.size(), System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                journal = null;
+            }
+            log.error("Error rebuilding search suggestions: {}", e.getMessage(), e);
+        }
+    }
+
+    private void apply(Consumer<IndexState> op) {
+        synchronized (writeLock) {
+            if (state == null) {
+                state = new IndexState(topK);
+            }
+            op.accept(state);
+            if (journal != null) {
+                journal.add(op);
+            }
+        }
+    }
+
+    private static double userWeight(Integer followers, Boolean tick) {
+        double weight = 1.0 + (followers == null ? 0 : Math.max(0, followers));
+        return Boolean.TRUE.equals(tick) ? weight * 2 : weight;
+    }
+
+    // Fold, gộp khoảng trắng liên tiếp
+    private static String normalize(String text) {
+        return TextFolding.fold(text).trim().replaceAll("\\s+", " ");
+    }
+
+    private static boolean isKey(String key) {
+        return !key.isEmpty() && key.length() <= MAX_KEY_LENGTH;
+    }
+
+    /**
+     * Phần đóng góp của một video public: tên nhạc và các từ trong description, cùng trọng số
+     */
+    private static final class Contribution {
+        static final Contribution NONE = new Contribution(null, null, new String[0], 0);
+
+        final String musicKey;
+        final String music;
+        final String[] terms;
+        final double weight;
+
+        private Contribution(String musicKey, String music, String[] terms, double weight) {
+            this.musicKey = musicKey;
+            this.music = music;
+            this.terms = terms;
+            this.weight = weight;
+        }
+
+        static Contribution of(String viewable, String description, String music,
+                               Integer likes, Integer comments, Integer shares, Integer views) {
+            if (viewable != null && !"public".equals(viewable)) {
+                return NONE;
+            }
+            String musicKey = music == null ? "" : normalize(music);
+            String[] terms = TextFolding.tokens(description).stream()
+                    .filter(term -> term.length() >= MIN_TERM_LENGTH && isKey(term))
+                    .limit(MAX_VIDEO_TERMS)
+                    .toArray(String[]::new);
+            double weight = 1.0 + valueOf(likes) + 2.0 * valueOf(comments)
+                    + 3.0 * valueOf(shares) + 0.1 * valueOf(views);
+            return isKey(musicKey)
+                    ? new Contribution(musicKey, music.trim(), terms, weight)
+                    : new Contribution(null, null, terms, weight);
+        }
+
+        private static long valueOf(Integer count) {
+            return count == null ? 0 : count;
+        }
+    }
+
+    private static final class IndexState {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final int topK;
+        final Node root = new Node('\0');
+        final Map<String, Entry> entries = new HashMap<>(); // type + ":" + key
+        final Map<Long, Entry> users = new HashMap<>();
+        final Map<Long, Contribution> videos = new HashMap<>();
+
+        IndexState(int topK) {
+            this.topK = topK;
+        }
+
+        void putUser(Long userId, String nickname, double weight) {
+            String key = nickname == null ? "" : normalize(nickname);
+            lock.writeLock().lock();
+            try {
+                Entry old = users.remove(userId);
+                if (old != null) {
+                    adjust(old.type, old.key, old.display, -old.weight, -1);
+                }
+                if (isKey(key)) {
+                    users.put(userId, adjust(USER, key, nickname.trim(), weight, 1));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeUser(Long userId) {
+            lock.writeLock().lock();
+            try {
+                Entry old = users.remove(userId);
+                if (old != null) {
+                    adjust(old.type, old.key, old.display, -old.weight, -1);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void putVideo(Long videoId, Contribution contribution) {
+            lock.writeLock().lock();
+            try {
+                removeVideoLocked(videoId);
+                if (contribution == Contribution.NONE) {
+                    return;
+                }
+                videos.put(videoId, contribution);
+                if (contribution.musicKey != null) {
+                    adjust(MUSIC, contribution.musicKey, contribution.music, contribution.weight, 1);
+                }
+                for (String term : contribution.terms) {
+                    adjust(TERM, term, term, contribution.weight, 1);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeVideo(Long videoId) {
+            lock.writeLock().lock();
+            try {
+                removeVideoLocked(videoId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeVideoLocked(Long videoId) {
+            Contribution old = videos.remove(videoId);
+            if (old == null) {
+                return;
+            }
+            if (old.musicKey != null) {
+                adjust(MUSIC, old.musicKey, old.music, -old.weight, -1);
+            }
+            for (String term : old.terms) {
+                adjust(TERM, term, term, -old.weight, -1);
+            }
+        }
+
+        /**
+         * Cộng trọng số và số nguồn tham chiếu của một gợi ý, bỏ gợi ý khi hết nguồn.
+         * Trả về bản ghi của riêng nguồn này (dùng để trừ lại khi nguồn đổi).
+         */
+        private Entry adjust(String type, String key, String display, double weightDelta, int refsDelta) {
+            String entryKey = type + ":" + key;
+            Entry entry = entries.get(entryKey);
+            if (entry == null) {
+                if (refsDelta < 0) {
+                    return null;
+                }
+                entry = new Entry(type, key, display);
+                entries.put(entryKey, entry);
+            } else if (refsDelta > 0) {
+                entry.display = display;
+            }
+            entry.refs += refsDelta;
+            entry.weight = entry.refs <= 0 ? 0 : Math.max(0, entry.weight + weightDelta);
+            if (entry.refs <= 0) {
+                entries.remove(entryKey);
+            }
+            update(entry);
+
+            Entry own = new Entry(type, key, display);
+            own.weight = weightDelta;
+            return own;
+        }
+
+        /**
+         * Đặt lại entry ở node cuối của key rồi tính lại top-k từ dưới lên. Node cha chỉ có
+         * thể chứa entry nếu node con chứa nó, và entry không lọt top-k của node con thì cũng
+         * không lọt top-k của node cha, nên dừng ở node đầu tiên không bị ảnh hưởng.
+         */
+        private void update(Entry entry) {
+            boolean removing = entry.refs <= 0;
+            Node[] path = new Node[entry.key.length() + 1];
+            path[0] = root;
+            for (int i = 0; i < entry.key.length(); i++) {
+                Node next = path[i].child(entry.key.charAt(i));
+                if (next == null) {
+                    if (removing) {
+                        return;
+                    }
+                    next = path[i].addChild(entry.key.charAt(i));
+                }
+                path[i + 1] = next;
+            }
+
+            Node terminal = path[path.length - 1];
+            terminal.entries = removing ? without(terminal.entries, entry) : with(terminal.entries, entry);
+            for (int i = path.length - 1; i >= 0; i--) {
+                Node node = path[i];
+                if (!affects(node, entry, removing)) {
+                    break;
+                }
+                recompute(node);
+                if (i > 0 && node.isEmpty()) {
+                    path[i - 1].removeChild(node.c);
+                }
+            }
+        }
+
+        private boolean affects(Node node, Entry entry, boolean removing) {
+            if (indexOf(node.top, entry) >= 0) {
+                return true;
+            }
+            if (removing) {
+                return node.isEmpty();
+            }
+            return node.top.length < topK || BY_WEIGHT.compare(entry, node.top[node.top.length - 1]) < 0;
+        }
+
+        private void recompute(Node node) {
+            List<Entry> candidates = new ArrayList<>(Arrays.asList(node.entries));
+            for (Node child : node.children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            candidates.sort(BY_WEIGHT);
+            node.top = candidates.subList(0, Math.min(topK, candidates.size())).toArray(new Entry[0]);
+        }
+
+        private static int indexOf(Entry[] entries, Entry entry) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] == entry) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static Entry[] with(Entry[] entries, Entry entry) {
+            if (indexOf(entries, entry) >= 0) {
+                return entries;
+            }
+            Entry[] next = Arrays.copyOf(entries, entries.length + 1);
+            next[entries.length] = entry;
+            return next;
+        }
+
+        private static Entry[] without(Entry[] entries, Entry entry) {
+            int pos = indexOf(entries, entry);
+            if (pos < 0) {
+                return entries;
+            }
+            Entry[] next = new Entry[entries.length - 1];
+            System.arraycopy(entries, 0, next, 0, pos);
+            System.arraycopy(entries, pos + 1, next, pos, entries.length - pos - 1);
+            return next;
+        }
+    }
+
+    private static final class Entry {
+        final String type;
+        final String key;
+        String display;
+        double weight;
+        int refs;
+
+        Entry(String type, String key, String display) {
+            this.type = type;
+            this.key = key;
+            this.display = display;
+        }
+    }
+
+    private static final class Node {
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+
+        final char c;
+        Node[] children = NO_CHILDREN; // sắp xếp theo ký tự
+        Entry[] entries = NO_ENTRIES;  // gợi ý có key kết thúc tại node này
+        Entry[] top = NO_ENTRIES;      // top-k của cả cây con, trọng số giảm dần
+
+        Node(char c) {
+            this.c = c;
+        }
+
+        boolean isEmpty() {
+            return entries.length == 0 && children.length == 0;
+        }
+
+        Node child(char ch) {
+            int pos = indexOf(ch);
+            return pos >= 0 ? children[pos] : null;
+        }
+
+        Node addChild(char ch) {
+            int insertAt = -indexOf(ch) - 1;
+            Node child = new Node(ch);
+            Node[] next = new Node[children.length + 1];
+            System.arraycopy(children, 0, next, 0, insertAt);
+            next[insertAt] = child;
+            System.arraycopy(children, insertAt, next, insertAt + 1, children.length - insertAt);
+            children = next;
+            return child;
+        }
+
+        void removeChild(char ch) {
+            int pos = indexOf(ch);
+            if (pos < 0) {
+                return;
+            }
+            Node[] next = new Node[children.length - 1];
+            System.arraycopy(children, 0, next, 0, pos);
+            System.arraycopy(children, pos + 1, next, pos, children.length - pos - 1);
+            children = next;
+        }
+
+        private int indexOf(char ch) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char value = children[mid].c;
+                if (value < ch) {
+                    low = mid + 1;
+                } else if (value > ch) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
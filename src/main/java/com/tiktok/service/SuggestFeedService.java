@@ -0,0 +1,142 @@
+package com.tiktok.service;
+
+import com.tiktok.dto.CursorPage;
+import com.tiktok.model.Video;
+import com.tiktok.repository.VideoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Feed gợi ý: giữ một pool ID video public (rebuild định kỳ) và trả về
+ * một hoán vị ngẫu nhiên ổn định theo seed cho từng client.
+ *
+ * Mỗi trang chỉ tính size vị trí trong hoán vị (Feistel + cycle walking),
+ * rồi hydrate bằng một lần findAllById, nên chi phí không phụ thuộc vào
+ * kích thước bảng videos. Cùng seed và cùng pool thì các trang không bị
+ * trùng hay sót video.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SuggestFeedService {
+
+    private static final int FEISTEL_ROUNDS = 4;
+
+    private final VideoRepository videoRepository;
+
+    @Value("${feed.pool.max-size:200000}")
+    private int maxPoolSize;
+
+    private volatile long[] pool;
+
+    public long newSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+
+    /**
+     * Lấy một trang (page bắt đầu từ 1) của feed theo seed, size được giới hạn bởi CursorPage.clampSize
+     */
+    public List<Video> getPage(long seed, int page, int size) {
+        int limit = CursorPage.clampSize(size);
+        long[] ids = currentPool();
+        long n = ids.length;
+        long offset = (long) Math.max(page - 1, 0) * limit;
+        if (offset >= n) {
+            return Collections.emptyList();
+        }
+
+        long end = Math.min(offset + limit, n);
+        List<Long> pageIds = new ArrayList<>((int) (end - offset));
+        for (long i = offset; i < end; i++) {
+            pageIds.add(ids[(int) permute(i, n, seed)]);
+        }
+
+        Map<Long, Video> byId = new HashMap<>();
+        for (Video video : videoRepository.findAllById(pageIds)) {
+            // Video có thể đã bị ẩn sau lần rebuild pool gần nhất
+            if ("public".equals(video.getViewable())) {
+                byId.put(video.getId(), video);
+            }
+        }
+
+        List<Video> result = new ArrayList<>(byId.size());
+        for (Long id : pageIds) {
+            Video video = byId.get(id);
+            if (video != null) {
+                result.add(video);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rebuild pool ID video public (mới nhất trước, giới hạn bởi feed.pool.max-size)
+     */
+    @Scheduled(fixedDelayString = "${feed.pool.refresh-interval-ms:300000}")
+    public void rebuildPool() {
+        List<Long> ids = videoRepository.findPublicVideoIds(PageRequest.of(0, maxPoolSize));
+        long[] next = new long[ids.size()];
+        for (int i = 0; i < next.length; i++) {
+            next[i] = ids.get(i);
+        }
+        pool = next;
+        log.debug("Suggest feed pool rebuilt with {} videos", next.length);
+    }
+
+    private long[] currentPool() {
+        long[] ids = pool;
+        if (ids == null) {
+            synchronized (this) {
+                if (pool == null) {
+                    rebuildPool();
+                }
+                ids = pool;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Hoán vị giả ngẫu nhiên của [0, n) theo seed: Feistel cân bằng trên miền 2^(2h) >= n,
+     * cycle walking cho đến khi rơi vào [0, n). Vì là song ánh nên luôn dừng.
+     */
+    static long permute(long index, long n, long seed) {
+        if (n <= 1) {
+            return index;
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(n - 1);
+        int halfBits = Math.max(1, (bits + 1) / 2);
+        long mask = (1L << halfBits) - 1;
+
+        long x = index;
+        do {
+            long left = x >>> halfBits;
+            long right = x & mask;
+            for (int round = 0; round < FEISTEL_ROUNDS; round++) {
+                long next = left ^ (mix(right ^ (seed + round * 0x9E3779B97F4A7C15L)) & mask);
+                left = right;
+                right = next;
+            }
+            x = (left << halfBits) | right;
+        } while (x >= n);
+        return x;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,286 @@
+package com.tiktok.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tiktok.dto.CursorPage;
+import com.tiktok.exception.BadRequestException;
+import com.tiktok.repository.CommentRepository;
+import com.tiktok.util.CacheMetrics;
+import com.tiktok.util.CursorCodec;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Xếp hạng top comment (comment gốc) của từng video theo likes và số reply, giảm dần theo tuổi comment.
+ *
+ * Điểm = log(1 + LIKE_WEIGHT * likes + REPLY_WEIGHT * replies) + lambda * (createdAt - t0): comment
+ * cũ hơn một half-life cần gấp đôi tương tác để đứng ngang comment mới. Mọi comment decay cùng tốc
+ * độ nên thứ tự không đổi theo thời gian, like/reply chỉ cần tính lại điểm của một comment.
+ *
+ * Mỗi video giữ tối đa comments.top.size-per-video comment trong một TreeSet. Lần đọc đầu của video
+ * được seed bằng vài query theo index (nhiều like nhất, nhiều reply nhất, mới nhất), sau đó được cập
+ * nhật theo event comment/reply/like/xóa. Video không được đọc trong comments.top.idle-minutes bị bỏ.
+ *
+ * Hết phần in-memory thì phân trang tiếp từ DB theo likes giảm dần (keyset (likes, id), bỏ các
+ * comment đang nằm trong phần in-memory), nên comment ngoài top size-per-video vẫn đọc được.
+ */
+@Service
+@RequiredArgsConstructor
+public class TopCommentsService {
+
+    public static final double LIKE_WEIGHT = 1.0;
+    public static final double REPLY_WEIGHT = 3.0;
+    // t0 cố định (2024-01-01T00:00:00Z) để điểm trong cursor giống nhau giữa các lần restart và các instance
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    // Phần đầu của cursor khi đã chuyển sang phân trang từ DB
+    private static final String DB_CURSOR = "db";
+
+    private final CommentRepository commentRepository;
+
+    @Value("${comments.top.half-life-hours:24}")
+    private double halfLifeHours;
+
+    @Value("${comments.top.size-per-video:200}")
+    private int sizePerVideo;
+
+    @Value("${comments.top.max-videos:10000}")
+    private long maxVideos;
+
+    @Value("${comments.top.idle-minutes:60}")
+    private long idleMinutes;
+
+    private Cache<Long, VideoTop> videos;
+
+    @PostConstruct
+    void init() {
+        videos = Caffeine.newBuilder()
+                .maximumSize(maxVideos)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Trang id top comment của video, cursor là (điểm, id) của comment cuối trang trước, hoặc
+     * (db, likes, id) khi đã sang phần đọc từ DB
+     */
+    public CursorPage<Long> getPage(Long videoId, String cursor, int limit) {
+        VideoTop top = videos.get(videoId, this::seed);
+        String[] parts = cursor == null ? null : CursorCodec.decode(cursor);
+        if (parts != null && parts.length == 3 && DB_CURSOR.equals(parts[0])) {
+            try {
+                int likes = Integer.parseInt(parts[1]);
+                long id = Long.parseLong(parts[2]);
+                return dbPage(videoId, top, new ArrayList<>(), likes, id, limit);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        CursorPage<Long> page = top.page(parts == null ? null : decodeCursor(parts), limit);
+        if (page.getNextCursor() != null) {
+            return page;
+        }
+        // Hết phần in-memory: lấp phần còn lại của trang từ DB
+        return dbPage(videoId, top, new ArrayList<>(page.getItems()), Integer.MAX_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    private CursorPage<Long> dbPage(Long videoId, VideoTop top, List<Long> items, int likes, long id, int limit) {
+        int need = limit - items.size();
+        Set<Long> ranked = top.ids();
+        List<CommentRepository.CommentRef> rows = commentRepository.findMostLikedRootsAfter(
+                videoId, ranked.isEmpty() ? Set.of(-1L) : ranked, likes, id, PageRequest.of(0, need + 1));
+        for (int i = 0; i < Math.min(need, rows.size()); i++) {
+            items.add(rows.get(i).getId());
+        }
+        if (rows.size() <= need) {
+            return new CursorPage<>(items, null);
+        }
+        // Trang đã đủ từ phần in-memory thì trang sau bắt đầu từ đầu phần DB
+        if (need == 0) {
+            return new CursorPage<>(items, CursorCodec.encode(DB_CURSOR, likes, id));
+        }
+        CommentRepository.CommentRef last = rows.get(need - 1);
+        return new CursorPage<>(items, CursorCodec.encode(DB_CURSOR, valueOf(last.getLikesCount()), last.getId()));
+    }
+
+    public void recordComment(Long videoId, Long commentId, LocalDateTime createdAt) {
+        VideoTop top = videos.getIfPresent(videoId);
+        if (top != null) {
+            top.put(new Entry(commentId, millisOf(createdAt), 0, 0, score(millisOf(createdAt), 0, 0)));
+        }
+    }
+
+    /**
+     * Like/unlike của một comment gốc, ref là row đọc trong transaction của like
+     */
+    public void recordLike(CommentRepository.CommentRef ref, int delta) {
+        update(ref, delta, 0);
+    }
+
+    public void recordReply(CommentRepository.CommentRef parent, int delta) {
+        update(parent, 0, delta);
+    }
+
+    public void remove(Long videoId, Long commentId) {
+        VideoTop top = videos.getIfPresent(videoId);
+        if (top != null) {
+            top.remove(commentId);
+        }
+    }
+
+    public void invalidate(Long videoId) {
+        videos.invalidate(videoId);
+    }
+
+    public Map<String, Object> stats() {
+        return CacheMetrics.snapshot(videos);
+    }
+
+    private void update(CommentRepository.CommentRef ref, int likesDelta, int repliesDelta) {
+        VideoTop top = videos.getIfPresent(ref.getVideoId());
+        // Chỉ comment gốc được xếp hạng
+        if (top == null || ref.getParentId() != null) {
+            return;
+        }
+        synchronized (top) {
+            Entry old = top.byId.get(ref.getId());
+            // Comment chưa có trong top (bị đẩy ra hoặc chưa seed) thì lấy counter từ row
+            int likes = Math.max(0, (old != null ? old.likes : valueOf(ref.getLikesCount())) + likesDelta);
+            int replies = Math.max(0, (old != null ? old.replies : valueOf(ref.getRepliesCount())) + repliesDelta);
+            long createdAt = old != null ? old.createdAtMillis : millisOf(ref.getCreatedAt());
+            top.put(new Entry(ref.getId(), createdAt, likes, replies, score(createdAt, likes, replies)));
+        }
+    }
+
+    private VideoTop seed(Long videoId) {
+        PageRequest limit = PageRequest.of(0, sizePerVideo);
+        Map<Long, CommentRepository.CommentRef> candidates = new HashMap<>();
+        commentRepository.findMostLikedRoots(videoId, limit).forEach(row -> candidates.put(row.getId(), row));
+        commentRepository.findMostRepliedRoots(videoId, limit).forEach(row -> candidates.put(row.getId(), row));
+        commentRepository.findNewestRoots(videoId, limit).forEach(row -> candidates.put(row.getId(), row));
+
+        VideoTop top = new VideoTop(sizePerVideo);
+        for (CommentRepository.CommentRef row : candidates.values()) {
+            long createdAt = millisOf(row.getCreatedAt());
+            int likes = valueOf(row.getLikesCount());
+            int replies = valueOf(row.getRepliesCount());
+            top.put(new Entry(row.getId(), createdAt, likes, replies, score(createdAt, likes, replies)));
+        }
+        return top;
+    }
+
+    private double score(long createdAtMillis, int likes, int replies) {
+        double decayPerMilli = Math.log(2) / (halfLifeHours * 3_600_000d);
+        return Math.log(1 + LIKE_WEIGHT * likes + REPLY_WEIGHT * replies)
+                + decayPerMilli * (createdAtMillis - EPOCH_MILLIS);
+    }
+
+    private static long millisOf(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static int valueOf(Integer count) {
+        return count == null ? 0 : count;
+    }
+
+    private static String cursorOf(Entry entry) {
+        return CursorCodec.encode(entry.score, entry.commentId);
+    }
+
+    private static Entry decodeCursor(String[] parts) {
+        if (parts.length != 2) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        try {
+            return new Entry(Long.parseLong(parts[1]), 0, 0, 0, Double.parseDouble(parts[0]));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Top-K comment của một video, bỏ comment điểm thấp nhất khi vượt quá capacity
+     */
+    private static final class VideoTop {
+        private final int capacity;
+        private final Map<Long, Entry> byId = new HashMap<>();
+        private final TreeSet<Entry> ranking = new TreeSet<>();
+
+        VideoTop(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void put(Entry entry) {
+            Entry old = byId.put(entry.commentId, entry);
+            if (old != null) {
+                ranking.remove(old);
+            }
+            ranking.add(entry);
+            while (ranking.size() > capacity) {
+                byId.remove(ranking.pollFirst().commentId);
+            }
+        }
+
+        synchronized Set<Long> ids() {
+            return new HashSet<>(byId.keySet());
+        }
+
+        synchronized void remove(Long commentId) {
+            Entry old = byId.remove(commentId);
+            if (old != null) {
+                ranking.remove(old);
+            }
+        }
+
+        synchronized CursorPage<Long> page(Entry after, int limit) {
+            Iterable<Entry> candidates = after == null
+                    ? ranking.descendingSet()
+                    : ranking.headSet(after, false).descendingSet();
+            List<Entry> page = new ArrayList<>(limit + 1);
+            for (Entry entry : candidates) {
+                page.add(entry);
+                if (page.size() > limit) {
+                    break;
+                }
+            }
+            return CursorPage.of(page, limit, TopCommentsService::cursorOf).map(entry -> entry.commentId);
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final long commentId;
+        final long createdAtMillis;
+        final int likes;
+        final int replies;
+        final double score;
+
+        Entry(long commentId, long createdAtMillis, int likes, int replies, double score) {
+            this.commentId = commentId;
+            this.createdAtMillis = createdAtMillis;
+            this.likes = likes;
+            this.replies = replies;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(commentId, other.commentId);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.tiktok.service;
+
+import com.tiktok.dto.CursorPage;
+import com.tiktok.exception.BadRequestException;
+import com.tiktok.model.Video;
+import com.tiktok.repository.VideoRepository;
+import com.tiktok.util.CursorCodec;
+import com.tiktok.util.DeltaBuffer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Xếp hạng video trending theo điểm tương tác giảm dần theo thời gian (exponential decay).
+ *
+ * Điểm được lưu dưới dạng log: log(sum(w_i * e^(lambda * (t_i - t0)))). Vì mọi điểm
+ * decay cùng tốc độ nên thứ tự không đổi theo thời gian, mỗi event chỉ cần cộng
+ * thêm một số hạng (log-sum-exp) mà không phải tính lại toàn bộ, và không bị tràn số.
+ *
+ * Chỉ giữ tối đa trending.max-tracked video trong một skip list sắp theo điểm;
+ * vượt quá thì bỏ video điểm thấp nhất. Đọc một trang là duyệt O(k) từ đầu skip list.
+ *
+ * Request view/like/comment/share chỉ cộng trọng số vào DeltaBuffer theo video (không lock);
+ * job flush mỗi trending.flush-interval-ms gom lại và cập nhật ranking một lần mỗi video,
+ * coi như các event trong cửa sổ xảy ra tại lúc flush.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrendingService {
+
+    public static final long VIEW_WEIGHT = 1;
+    public static final long LIKE_WEIGHT = 5;
+    public static final long COMMENT_WEIGHT = 8;
+    public static final long SHARE_WEIGHT = 12;
+    // t0 cố định (2024-01-01T00:00:00Z): cursor phát ra ở instance này vẫn đúng ở instance khác/sau restart
+    private static final long EPOCH_MILLIS = 1_704_067_200_000L;
+
+    private final VideoRepository videoRepository;
+
+    @Value("${trending.half-life-hours:6}")
+    private double halfLifeHours;
+
+    @Value("${trending.max-tracked:10000}")
+    private int maxTracked;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>();
+    // Tổng trọng số event chưa áp vào ranking của từng video
+    private final DeltaBuffer pending = new DeltaBuffer();
+
+    public void recordView(Long videoId) {
+        pending.add(videoId, VIEW_WEIGHT);
+    }
+
+    public void recordLike(Long videoId) {
+        pending.add(videoId, LIKE_WEIGHT);
+    }
+
+    public void recordComment(Long videoId) {
+        pending.add(videoId, COMMENT_WEIGHT);
+    }
+
+    public void recordShare(Long videoId) {
+        pending.add(videoId, SHARE_WEIGHT);
+    }
+
+    @Scheduled(fixedDelayString = "${trending.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<Long, Long> weights = pending.drain();
+        long now = System.currentTimeMillis();
+        try {
+            weights.forEach((videoId, weight) -> {
+                if (weight > 0) {
+                    record(videoId, weight, now);
+                }
+            });
+        } finally {
+            pending.completeFlush();
+        }
+    }
+
+    public synchronized void remove(Long videoId) {
+        Entry entry = entries.remove(videoId);
+        if (entry != null) {
+            ranking.remove(entry);
+        }
+    }
+
+    /**
+     * Trang video trending, cursor là (điểm, id) của video cuối trang trước
+     */
+    public CursorPage<Long> getPage(String cursor, int limit) {
+        Iterable<Entry> candidates = cursor == null
+                ? ranking.descendingSet()
+                : ranking.headSet(decodeCursor(cursor), false).descendingSet();
+
+        List<Entry> page = new ArrayList<>(limit + 1);
+        Set<Long> seen = new HashSet<>();
+        for (Entry entry : candidates) {
+            // Iterator của skip list là weakly consistent, một video vừa được cập nhật có thể gặp 2 lần
+            if (seen.add(entry.videoId)) {
+                page.add(entry);
+                if (page.size() > limit) {
+                    break;
+                }
+            }
+        }
+        return CursorPage.of(page, limit, TrendingService::cursorOf).map(entry -> entry.videoId);
+    }
+
+    /**
+     * Hydrate một trang id trending thành video, giữ nguyên thứ tự xếp hạng
+     */
+    public List<Video> loadVideos(List<Long> videoIds) {
+        if (videoIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Video> byId = new HashMap<>();
+        for (Video video : videoRepository.findAllById(videoIds)) {
+            if ("public".equals(video.getViewable())) {
+                byId.put(video.getId(), video);
+            }
+        }
+        List<Video> videos = new ArrayList<>(byId.size());
+        for (Long id : videoIds) {
+            Video video = byId.get(id);
+            if (video != null) {
+                videos.add(video);
+            }
+        }
+        return videos;
+    }
+
+    /**
+     * Khởi tạo ranking sau khi restart từ counter của các video gần đây,
+     * coi như toàn bộ tương tác xảy ra tại thời điểm đăng video
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        try {
+            LocalDateTime since = LocalDateTime.now().minusMinutes((long) (halfLifeHours * 60 * 8));
+            List<VideoRepository.TrendingSeedRow> rows =
+                    videoRepository.findTrendingSeedRows(since, PageRequest.of(0, maxTracked));
+            for (VideoRepository.TrendingSeedRow row : rows) {
+                double weight = VIEW_WEIGHT * valueOf(row.getViewsCount())
+                        + LIKE_WEIGHT * valueOf(row.getLikesCount())
+                        + COMMENT_WEIGHT * valueOf(row.getCommentsCount())
+                        + SHARE_WEIGHT * valueOf(row.getSharesCount());
+                if (weight > 0) {
+                    long at = row.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    record(row.getId(), weight, at);
+                }
+            }
+            log.info("Trending ranking bootstrapped with {} videos", entries.size());
+        } catch (RuntimeException e) {
+            log.error("Error bootstrapping trending ranking: {}", e.getMessage(), e);
+        }
+    }
+
+    private synchronized void record(Long videoId, double weight, long atMillis) {
+        double decayPerMilli = Math.log(2) / (halfLifeHours * 3_600_000d);
+        double term = Math.log(weight) + decayPerMilli * (atMillis - EPOCH_MILLIS);
+
+        Entry old = entries.get(videoId);
+        double logScore = term;
+        if (old != null) {
+            ranking.remove(old);
+            logScore = logAddExp(old.logScore, term);
+        }
+        Entry entry = new Entry(videoId, logScore);
+        entries.put(videoId, entry);
+        ranking.add(entry);
+
+        while (ranking.size() > maxTracked) {
+            Entry lowest = ranking.pollFirst();
+            if (lowest != null) {
+                entries.remove(lowest.videoId);
+            }
+        }
+    }
+
+    private static double logAddExp(double a, double b) {
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+
+    private static String cursorOf(Entry entry) {
+        return CursorCodec.encode(entry.logScore, entry.videoId);
+    }
+
+    private static Entry decodeCursor(String cursor) {
+        String[] parts = CursorCodec.decode(cursor, 2);
+        try {
+            return new Entry(Long.parseLong(parts[1]), Double.parseDouble(parts[0]));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private static long valueOf(Integer count) {
+        return count == null ? 0 : count;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final long videoId;
+        final double logScore;
+
+        Entry(long videoId, double logScore) {
+            this.videoId = videoId;
+            this.logScore = logScore;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byScore = Double.compare(logScore, other.logScore);
+            return byScore != 0 ? byScore : Long.compare(videoId, other.videoId);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.tiktok.service;
+
+import com.tiktok.dto.StoredMedia;
+import com.tiktok.exception.ResourceNotFoundException;
+import com.tiktok.model.UploadJob;
+import com.tiktok.model.Video;
+import com.tiktok.model.VideoMeta;
+import com.tiktok.repository.UploadJobRepository;
+import com.tiktok.repository.UserRepository;
+import com.tiktok.util.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline upload video bất đồng bộ.
+ *
+ * Request chỉ spool file xuống upload.spool-dir và tạo UploadJob (PENDING) rồi trả 202.
+ * Một pool worker giới hạn claim job bằng UPDATE có điều kiện (lease), upload lên storage,
+ * dựng VideoMeta và tạo Video. Lỗi thì retry với exponential backoff; job của worker chết
+ * được claim lại khi lease hết hạn. Tiến độ và kết quả được đẩy qua WebSocket.
+ *
+ * File spool nằm trên đĩa local nên job gắn với node đã nhận file (upload.node-id, phải
+ * giữ nguyên qua restart cùng với spool-dir); node khác chỉ nhận job đã upload xong lên
+ * storage. Lease được gia hạn theo tiến độ upload nên upload chậm không bị claim lại.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadJobService {
+
+    private static final long MAX_BACKOFF_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final UploadJobRepository uploadJobRepository;
+    private final UserRepository userRepository;
+    private final MediaBlobService mediaBlobService;
+    private final VideoService videoService;
+    private final WebSocketNotificationService webSocketNotificationService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${upload.spool-dir:${java.io.tmpdir}/tiktok-uploads}")
+    private String spoolDir;
+
+    @Value("${upload.jobs.workers:2}")
+    private int workers;
+
+    @Value("${upload.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${upload.jobs.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${upload.jobs.retry-base-delay-ms:10000}")
+    private long retryBaseDelayMs;
+
+    @Value("${upload.jobs.lease-ms:900000}")
+    private long leaseMs;
+
+    @Value("${upload.node-id:${HOSTNAME:local}}")
+    private String nodeId;
+
+    private ThreadPoolExecutor executor;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() throws IOException {
+        Files.createDirectories(Paths.get(spoolDir));
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Spool file xuống đĩa rồi mới mở transaction tạo job (không giữ connection DB trong lúc
+     * ghi file), worker sẽ xử lý sau khi commit
+     */
+    public UploadJob submit(MultipartFile file, Long userId, String description, String music,
+                            String viewable, String type) throws IOException {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        validate(file.getContentType(), userId);
+
+        Path spooled = Paths.get(spoolDir, UUID.randomUUID().toString());
+        file.transferTo(spooled);
+        try {
+            return transactionTemplate.execute(status -> submitSpooled(spooled, file.getSize(),
+                    file.getContentType(), userId, description, music, viewable, type));
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+    }
+
+    /**
+     * Tạo job cho file đã có sẵn trên đĩa (vd. upload resumable đã nhận đủ).
+     * Job sở hữu file từ đây và xóa nó khi xong.
+     */
+    @Transactional
+    public UploadJob submitSpooled(Path spooled, long fileSize, String contentType, Long userId,
+                                   String description, String music, String viewable, String type) {
+        validate(contentType, userId);
+
+        UploadJob job = new UploadJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setUserId(userId);
+        job.setNodeId(nodeId);
+        job.setFilePath(spooled.toString());
+        job.setContentType(contentType);
+        job.setFileSize(fileSize);
+        job.setDescription(description);
+        job.setMusic(music);
+        job.setViewable(viewable);
+        job.setType(type);
+        UploadJob saved = uploadJobRepository.save(job);
+
+        AfterCommit.run(() -> dispatch(saved.getId()));
+        return saved;
+    }
+
+    public Path getSpoolDir() {
+        return Paths.get(spoolDir);
+    }
+
+    @Transactional(readOnly = true)
+    public UploadJob getJob(String jobId) {
+        return uploadJobRepository.findById(jobId)
+                .orElseThrow(() -> new ResourceNotFoundException("Upload job not found with id: " + jobId));
+    }
+
+    /**
+     * Lấy lại các job đến hạn retry hoặc có lease hết hạn
+     */
+    @Scheduled(fixedDelayString = "${upload.jobs.poll-interval-ms:5000}")
+    public void pollDueJobs() {
+        int free = queueCapacity - executor.getQueue().size();
+        if (free <= 0) {
+            return;
+        }
+        try {
+            uploadJobRepository.findDueJobIds(nodeId, LocalDateTime.now(), PageRequest.of(0, free))
+                    .forEach(this::dispatch);
+        } catch (RuntimeException e) {
+            log.error("Error polling upload jobs: {}", e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(String jobId) {
+        if (!queued.add(jobId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                queued.remove(jobId);
+                process(jobId);
+            });
+        } catch (RejectedExecutionException e) {
+            // Queue đầy: job vẫn PENDING trong DB, poller sẽ lấy lại sau
+            queued.remove(jobId);
+        }
+    }
+
+    private void process(String jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (uploadJobRepository.claim(jobId, nodeId, now, now.plus(leaseMs, ChronoUnit.MILLIS)) == 0) {
+            return; // Worker khác đã claim hoặc job chưa đến hạn
+        }
+        UploadJob job = uploadJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+        webSocketNotificationService.sendUploadStatus(job.getUserId(), job);
+
+        try {
+            // Lần retry sau khi đã upload xong thì không upload lại
+            if (job.getFileUrl() == null) {
+                upload(job);
+            }
+
+            // Tạo video và đánh dấu job xong trong cùng transaction để retry không tạo video trùng
+            UploadJob finished = transactionTemplate.execute(status -> {
+                Video video = videoService.createVideo(toVideo(job));
+                job.setVideoId(video.getId());
+                job.setStatus(UploadJob.SUCCEEDED);
+                job.setProgress(100);
+                job.setLeaseUntil(null);
+                job.setError(null);
+                return uploadJobRepository.save(job);
+            });
+
+            deleteSpooledFile(finished);
+            log.info("Upload job {} finished, video {}", jobId, finished.getVideoId());
+            webSocketNotificationService.sendUploadStatus(finished.getUserId(), finished);
+        } catch (Exception e) {
+            fail(job, e);
+        }
+    }
+
+    private void validate(String contentType, Long userId) {
+        if (contentType == null || !contentType.startsWith("video/")) {
+            throw new IllegalArgumentException("File must be a video");
+        }
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with id: " + userId);
+        }
+    }
+
+    private void upload(UploadJob job) throws IOException {
+        int[] reported = {0};
+        long[] renewedAt = {System.currentTimeMillis()};
+        StoredMedia media = mediaBlobService.storeVideo(
+                new File(job.getFilePath()), job.getContentType(), (uploadedBytes, totalBytes) -> {
+                    int percent = totalBytes > 0 ? (int) (uploadedBytes * 100 / totalBytes) : 0;
+                    long now = System.currentTimeMillis();
+                    // Chỉ ghi DB mỗi 10% hoặc khi đã qua 1/3 lease, đẩy WebSocket khi tiến độ tăng
+                    boolean step = percent >= reported[0] + 10 && percent < 100;
+                    if (!step && now - renewedAt[0] < leaseMs / 3) {
+                        return;
+                    }
+                    if (step) {
+                        reported[0] = percent;
+                        job.setProgress(percent);
+                    }
+                    renewedAt[0] = now;
+                    // Giữ leaseUntil của entity khớp DB vì job còn được save() sau khi upload xong
+                    job.setLeaseUntil(LocalDateTime.now().plus(leaseMs, ChronoUnit.MILLIS));
+                    if (uploadJobRepository.updateProgress(job.getId(), job.getProgress(), job.getLeaseUntil()) == 0) {
+                        log.warn("Upload job {} is no longer running, lease not renewed", job.getId());
+                    }
+                    if (step) {
+                        webSocketNotificationService.sendUploadStatus(job.getUserId(), job);
+                    }
+                });
+
+        job.setFileUrl(media.getFileUrl());
+        job.setThumbUrl(media.getThumbUrl());
+        job.setPublicId(media.getPublicId());
+        job.setFileFormat(media.getFormat());
+        job.setWidth(media.getWidth());
+        job.setHeight(media.getHeight());
+        job.setProgress(99);
+        uploadJobRepository.save(job);
+    }
+
+    private Video toVideo(UploadJob job) {
+        VideoMeta meta = new VideoMeta();
+        meta.setFileFormat(job.getFileFormat());
+        meta.setMimeType(job.getContentType());
+        meta.setVideo(new VideoMeta.VideoResolution(job.getWidth(), job.getHeight()));
+
+        Video video = new Video();
+        video.setUser(userRepository.findById(job.getUserId())
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + job.getUserId())));
+        video.setType(job.getType());
+        video.setThumbUrl(job.getThumbUrl());
+        video.setFileUrl(job.getFileUrl());
+        video.setPublicId(job.getPublicId());
+        video.setDescription(job.getDescription());
+        video.setMusic(job.getMusic());
+        video.setViewable(job.getViewable());
+        video.setMeta(meta);
+        return video;
+    }
+
+    private void fail(UploadJob job, Exception e) {
+        // File không hợp lệ / user đã bị xóa thì retry cũng không có ích
+        boolean permanent = e instanceof IllegalArgumentException || e instanceof ResourceNotFoundException;
+        job.setError(e.getMessage());
+        job.setLeaseUntil(null);
+        if (permanent || job.getAttempts() >= maxAttempts) {
+            job.setStatus(UploadJob.FAILED);
+            log.error("Upload job {} failed after {} attempts: {}", job.getId(), job.getAttempts(), e.getMessage(), e);
+        } else {
+            long delay = backoffMillis(job.getAttempts());
+            job.setStatus(UploadJob.PENDING);
+            job.setNextAttemptAt(LocalDateTime.now().plus(delay, ChronoUnit.MILLIS));
+            log.warn("Upload job {} attempt {} failed, retrying in {} ms: {}",
+                    job.getId(), job.getAttempts(), delay, e.getMessage());
+        }
+
+        try {
+            UploadJob saved = uploadJobRepository.save(job);
+            if (UploadJob.FAILED.equals(saved.getStatus())) {
+                deleteSpooledFile(saved);
+            }
+            webSocketNotificationService.sendUploadStatus(saved.getUserId(), saved);
+        } catch (RuntimeException saveError) {
+            // Job giữ trạng thái RUNNING, sẽ được claim lại khi lease hết hạn
+            log.error("Error saving upload job {}: {}", job.getId(), saveError.getMessage(), saveError);
+        }
+    }
+
+    private long backoffMillis(int attempts) {
+        long delay = retryBaseDelayMs << Math.min(Math.max(attempts - 1, 0), 20);
+        delay = Math.min(delay, MAX_BACKOFF_MS);
+        // Jitter 0-20% để các job lỗi cùng lúc không retry cùng lúc
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+
+    private void deleteSpooledFile(UploadJob job) {
+        try {
+            Files.deleteIfExists(Paths.get(job.getFilePath()));
+        } catch (IOException e) {
+            log.warn("Could not delete spooled file {}: {}", job.getFilePath(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,614 @@
+package com.tiktok.service;
+
+import com.tiktok.model.User;
+import com.tiktok.repository.UserRepository;
+import com.tiktok.util.TextFolding;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Index in-memory cho tìm kiếm user theo nickname và họ tên (thay cho LIKE '%q%' quét cả bảng).
+ *
+ * - Text được fold bỏ dấu tiếng Việt (TextFolding).
+ * - Radix trie (trie nén) trên nickname và từng từ của họ tên cho tìm theo tiền tố, kể cả query
+ *   1-2 ký tự; trigram index (posting list long[] sắp xếp) cho tìm chuỗi con bất kỳ, ứng viên
+ *   được kiểm tra lại bằng contains nên không có kết quả sai.
+ * - Xếp hạng: khớp nickname chính xác > tiền tố nickname > tiền tố họ tên > chuỗi con, cùng
+ *   mức thì theo followersCount và tick.
+ * - Cập nhật incremental từ UserService/AuthService sau commit (copy-on-write posting list);
+ *   rebuild lúc khởi động và định kỳ (làm mới followersCount) gom id theo từng key vào buffer
+ *   rồi đóng băng thành long[] một lần, thay đổi trong lúc rebuild được ghi journal rồi replay.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserSearchIndex {
+
+    private static final double EXACT_NICKNAME = 4.0;
+    private static final double NICKNAME_PREFIX = 3.0;
+    private static final double NAME_PREFIX = 2.0;
+    private static final double INFIX = 1.0;
+    private static final int MAX_PREFIX_CANDIDATES = 2_000;
+    private static final int MAX_INFIX_CANDIDATES = 5_000;
+    private static final int MAX_QUERY_LENGTH = 64;
+    private static final long REBUILD_CHUNK = 10_000;
+
+    private final UserRepository userRepository;
+
+    private final Object writeLock = new Object();
+    private volatile IndexState state = new IndexState();
+    private volatile boolean ready;
+    private List<Consumer<IndexState>> journal; // khác null khi đang rebuild, guarded by writeLock
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void index(User user) {
+        Doc doc = Doc.of(user.getId(), user.getNickname(), user.getFirstName(), user.getLastName(),
+                user.getFollowersCount(), user.getTick());
+        apply(index -> index.put(doc));
+    }
+
+    public void remove(Long userId) {
+        apply(index -> index.remove(userId));
+    }
+
+    /**
+     * Tối đa limit user id khớp query, xếp theo mức khớp rồi độ phổ biến
+     */
+    public List<Long> search(String query, int limit) {
+        String folded = normalize(query);
+        if (folded.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        IndexState index = state;
+        index.lock.readLock().lock();
+        try {
+            Map<Long, Double> matches = new HashMap<>();
+            List<Long> prefixed = new ArrayList<>();
+            index.trie.collect(folded, MAX_PREFIX_CANDIDATES, prefixed);
+            for (Long id : prefixed) {
+                Doc doc = index.docs.get(id);
+                if (doc != null) {
+                    matches.merge(id, doc.nickname.equals(folded) ? EXACT_NICKNAME
+                            : doc.nickname.startsWith(folded) ? NICKNAME_PREFIX : NAME_PREFIX, Math::max);
+                }
+            }
+            if (folded.length() >= 3) {
+                for (long id : index.infixCandidates(folded)) {
+                    Doc doc = index.docs.get(id);
+                    if (doc != null && doc.contains(folded)) {
+                        matches.merge(id, INFIX, Math::max);
+                    }
+                }
+            }
+
+            // Top-k bằng min-heap kích thước limit
+            PriorityQueue<ScoredId> heap = new PriorityQueue<>(limit + 1);
+            matches.forEach((id, score) -> {
+                heap.add(new ScoredId(id, score + index.docs.get(id).boost));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            });
+            ScoredId[] ranked = heap.toArray(new ScoredId[0]);
+            Arrays.sort(ranked, Collections.reverseOrder());
+            List<Long> result = new ArrayList<>(ranked.length);
+            for (ScoredId scored : ranked) {
+                result.add(scored.id);
+            }
+            return result;
+        } finally {
+            index.lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${search.user.rebuild-initial-delay-ms:0}",
+            fixedDelayString = "${search.user.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        Builder builder = new Builder();
+        synchronized (writeLock) {
+            journal = new ArrayList<>();
+        }
+        try {
+            Long maxId = userRepository.findMaxId();
+            if (maxId != null) {
+                for (long from = 0; from < maxId; from += REBUILD_CHUNK) {
+                    for (UserRepository.SearchRow row : userRepository.findSearchRows(from, Math.min(from + REBUILD_CHUNK, maxId))) {
+                        builder.add(Doc.of(row.getId(), row.getNickname(), row.getFirstName(), row.getLastName(),
+                                row.getFollowersCount(), row.getTick()));
+                    }
+                }
+            }
+
+            IndexState next = builder.build();
+            synchronized (writeLock) {
+                journal.forEach(op -> op.accept(next));
+                journal = null;
+                state = next;
+                ready = true;
+            }
+            log.info("User search index rebuilt: {} users, {} trigrams in {} ms",
+                    next.docs.size(), next.trigrams.size(), System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                journal = null;
+            }
+            log.error("Error rebuilding user search index: {}", e.getMessage(), e);
+        }
+    }
+
+    private void apply(Consumer<IndexState> op) {
+        synchronized (writeLock) {
+            op.accept(state);
+            if (journal != null) {
+                journal.add(op);
+            }
+        }
+    }
+
+    // Fold, gộp khoảng trắng liên tiếp
+    private static String normalize(String text) {
+        String folded = TextFolding.fold(text).trim().replaceAll("\\s+", " ");
+        return folded.length() > MAX_QUERY_LENGTH ? folded.substring(0, MAX_QUERY_LENGTH) : folded;
+    }
+
+    private static final class IndexState {
+        final ReadWriteLock lock = new ReentrantReadWriteLock();
+        final Map<Long, Doc> docs = new HashMap<>();
+        final Map<String, long[]> trigrams = new HashMap<>();
+        final RadixTrie trie = new RadixTrie();
+
+        void put(Doc doc) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(doc.id);
+                docs.put(doc.id, doc);
+                for (String key : doc.prefixKeys()) {
+                    trie.insert(key, doc.id);
+                }
+                for (String trigram : doc.trigrams()) {
+                    trigrams.put(trigram, SortedIds.add(trigrams.get(trigram), doc.id));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeLocked(Long id) {
+            Doc old = docs.remove(id);
+            if (old == null) {
+                return;
+            }
+            for (String key : old.prefixKeys()) {
+                trie.remove(key, old.id);
+            }
+            for (String trigram : old.trigrams()) {
+                long[] ids = SortedIds.remove(trigrams.get(trigram), old.id);
+                if (ids == null) {
+                    trigrams.remove(trigram);
+                } else {
+                    trigrams.put(trigram, ids);
+                }
+            }
+        }
+
+        /**
+         * Giao các posting list của mọi trigram trong query, list ngắn nhất trước
+         */
+        long[] infixCandidates(String folded) {
+            List<long[]> lists = new ArrayList<>();
+            for (int i = 0; i + 3 <= folded.length(); i++) {
+                long[] ids = trigrams.get(folded.substring(i, i + 3));
+                if (ids == null) {
+                    return SortedIds.EMPTY;
+                }
+                lists.add(ids);
+            }
+            lists.sort((a, b) -> Integer.compare(a.length, b.length));
+            long[] result = lists.get(0);
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                result = SortedIds.intersect(result, lists.get(i));
+            }
+            return result.length > MAX_INFIX_CANDIDATES ? Arrays.copyOf(result, MAX_INFIX_CANDIDATES) : result;
+        }
+    }
+
+    /**
+     * Dựng IndexState cho rebuild: id của mỗi trigram/key được append vào buffer (row đến theo
+     * id tăng dần) thay vì copy cả posting list cho mỗi user
+     */
+    private static final class Builder {
+        final Map<Long, Doc> docs = new HashMap<>();
+        final Map<String, LongBuffer> trigrams = new HashMap<>();
+        final Map<String, LongBuffer> prefixKeys = new HashMap<>();
+
+        void add(Doc doc) {
+            docs.put(doc.id, doc);
+            for (String key : doc.prefixKeys()) {
+                prefixKeys.computeIfAbsent(key, k -> new LongBuffer()).append(doc.id);
+            }
+            for (String trigram : doc.trigrams()) {
+                trigrams.computeIfAbsent(trigram, t -> new LongBuffer()).append(doc.id);
+            }
+        }
+
+        IndexState build() {
+            IndexState state = new IndexState();
+            state.docs.putAll(docs);
+            trigrams.forEach((trigram, ids) -> state.trigrams.put(trigram, ids.toSortedArray()));
+            prefixKeys.forEach((key, ids) -> state.trie.insertAll(key, ids.toSortedArray()));
+            return state;
+        }
+    }
+
+    /**
+     * Mảng long tự nới, đóng băng thành long[] đã sắp xếp và bỏ trùng
+     */
+    private static final class LongBuffer {
+        private long[] values = new long[4];
+        private int size;
+
+        void append(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] result = Arrays.copyOf(values, size);
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = result[i - 1] < result[i];
+            }
+            if (sorted) {
+                return result;
+            }
+            Arrays.sort(result);
+            return Arrays.stream(result).distinct().toArray();
+        }
+    }
+
+    private static final class Doc {
+        final long id;
+        final String nickname; // đã fold
+        final String fullName; // đã fold, "ten ho"
+        final double boost;    // [0, 0.75): chỉ phân hạng giữa các user cùng mức khớp
+
+        private Doc(long id, String nickname, String fullName, double boost) {
+            this.id = id;
+            this.nickname = nickname;
+            this.fullName = fullName;
+            this.boost = boost;
+        }
+
+        static Doc of(Long id, String nickname, String firstName, String lastName, Integer followers, Boolean tick) {
+            String fullName = normalize((firstName == null ? "" : firstName) + " " + (lastName == null ? "" : lastName));
+            double logFollowers = Math.log1p(followers == null ? 0 : Math.max(0, followers));
+            double boost = 0.5 * logFollowers / (1.0 + logFollowers) + (Boolean.TRUE.equals(tick) ? 0.25 : 0);
+            return new Doc(id, normalize(nickname), fullName, boost);
+        }
+
+        boolean contains(String folded) {
+            return nickname.contains(folded) || fullName.contains(folded);
+        }
+
+        // Nickname và từng từ của họ tên
+        Set<String> prefixKeys() {
+            Set<String> keys = new LinkedHashSet<>();
+            if (!nickname.isEmpty()) {
+                keys.add(nickname);
+            }
+            for (String token : fullName.split(" ")) {
+                if (!token.isEmpty()) {
+                    keys.add(token);
+                }
+            }
+            return keys;
+        }
+
+        Set<String> trigrams() {
+            Set<String> trigrams = new LinkedHashSet<>();
+            for (String field : new String[]{nickname, fullName}) {
+                for (int i = 0; i + 3 <= field.length(); i++) {
+                    trigrams.add(field.substring(i, i + 3));
+                }
+            }
+            return trigrams;
+        }
+    }
+
+    /**
+     * Trie nén: mỗi cạnh mang một đoạn chuỗi, node có một con thì được gộp vào cạnh
+     */
+    private static final class RadixTrie {
+        private final Node root = new Node("");
+
+        void insert(String key, long id) {
+            Node node = nodeFor(key);
+            node.ids = SortedIds.add(node.ids, id);
+        }
+
+        /**
+         * Gắn cả posting list (đã sắp xếp) cho key, dùng khi rebuild
+         */
+        void insertAll(String key, long[] ids) {
+            Node node = nodeFor(key);
+            node.ids = node.ids == null ? ids : SortedIds.union(node.ids, ids);
+        }
+
+        // Node kết thúc key, tạo/tách cạnh nếu cần
+        private Node nodeFor(String key) {
+            Node node = root;
+            int pos = 0;
+            while (pos < key.length()) {
+                int index = node.childIndex(key.charAt(pos));
+                if (index < 0) {
+                    Node leaf = new Node(key.substring(pos));
+                    node.insertChild(-index - 1, leaf);
+                    return leaf;
+                }
+                Node child = node.children[index];
+                int common = commonPrefix(child.label, key, pos);
+                if (common < child.label.length()) {
+                    // Tách cạnh tại điểm khác nhau
+                    Node split = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    split.children = new Node[]{child};
+                    node.children[index] = split;
+                    child = split;
+                }
+                node = child;
+                pos += common;
+            }
+            return node;
+        }
+
+        void remove(String key, long id) {
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            int pos = 0;
+            while (pos < key.length()) {
+                int index = node.childIndex(key.charAt(pos));
+                if (index < 0) {
+                    return;
+                }
+                Node child = node.children[index];
+                if (!key.startsWith(child.label, pos)) {
+                    return;
+                }
+                path.add(node);
+                node = child;
+                pos += child.label.length();
+            }
+            node.ids = SortedIds.remove(node.ids, id);
+
+            // Dọn node rỗng và gộp node chỉ còn một con, từ dưới lên
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node parent = path.get(i);
+                if (node.ids == null && node.children.length == 0) {
+                    parent.removeChild(node);
+                } else if (node.ids == null && node.children.length == 1) {
+                    Node only = node.children[0];
+                    node.label = node.label + only.label;
+                    node.ids = only.ids;
+                    node.children = only.children;
+                }
+                node = parent;
+            }
+        }
+
+        /**
+         * Id của các key bắt đầu bằng prefix, tối đa max
+         */
+        void collect(String prefix, int max, List<Long> out) {
+            Node node = root;
+            int pos = 0;
+            while (pos < prefix.length()) {
+                int index = node.childIndex(prefix.charAt(pos));
+                if (index < 0) {
+                    return;
+                }
+                Node child = node.children[index];
+                int common = commonPrefix(child.label, prefix, pos);
+                if (pos + common < prefix.length() && common < child.label.length()) {
+                    return;
+                }
+                node = child;
+                pos += common;
+            }
+            collectSubtree(node, max, out);
+        }
+
+        private void collectSubtree(Node node, int max, List<Long> out) {
+            if (node.ids != null) {
+                for (long id : node.ids) {
+                    if (out.size() >= max) {
+                        return;
+                    }
+                    out.add(id);
+                }
+            }
+            for (Node child : node.children) {
+                if (out.size() >= max) {
+                    return;
+                }
+                collectSubtree(child, max, out);
+            }
+        }
+
+        private static int commonPrefix(String label, String key, int from) {
+            int max = Math.min(label.length(), key.length() - from);
+            int i = 0;
+            while (i < max && label.charAt(i) == key.charAt(from + i)) {
+                i++;
+            }
+            return i;
+        }
+
+        private static final class Node {
+            private static final Node[] NO_CHILDREN = new Node[0];
+
+            String label;
+            Node[] children = NO_CHILDREN; // sắp xếp theo ký tự đầu của label
+            long[] ids;                    // user có key kết thúc tại node này
+
+            Node(String label) {
+                this.label = label;
+            }
+
+            int childIndex(char first) {
+                int low = 0;
+                int high = children.length - 1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    char c = children[mid].label.charAt(0);
+                    if (c < first) {
+                        low = mid + 1;
+                    } else if (c > first) {
+                        high = mid - 1;
+                    } else {
+                        return mid;
+                    }
+                }
+                return -(low + 1);
+            }
+
+            void insertChild(int at, Node child) {
+                Node[] next = new Node[children.length + 1];
+                System.arraycopy(children, 0, next, 0, at);
+                next[at] = child;
+                System.arraycopy(children, at, next, at + 1, children.length - at);
+                children = next;
+            }
+
+            void removeChild(Node child) {
+                int at = childIndex(child.label.charAt(0));
+                Node[] next = new Node[children.length - 1];
+                System.arraycopy(children, 0, next, 0, at);
+                System.arraycopy(children, at + 1, next, at, children.length - at - 1);
+                children = next;
+            }
+        }
+    }
+
+    /**
+     * Thao tác trên long[] đã sắp xếp, null là tập rỗng
+     */
+    private static final class SortedIds {
+        static final long[] EMPTY = new long[0];
+
+        static long[] add(long[] ids, long id) {
+            if (ids == null) {
+                return new long[]{id};
+            }
+            int pos = Arrays.binarySearch(ids, id);
+            if (pos >= 0) {
+                return ids;
+            }
+            int insertAt = -pos - 1;
+            long[] next = new long[ids.length + 1];
+            System.arraycopy(ids, 0, next, 0, insertAt);
+            next[insertAt] = id;
+            System.arraycopy(ids, insertAt, next, insertAt + 1, ids.length - insertAt);
+            return next;
+        }
+
+        static long[] remove(long[] ids, long id) {
+            int pos = ids == null ? -1 : Arrays.binarySearch(ids, id);
+            if (pos < 0) {
+                return ids;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+            long[] next = new long[ids.length - 1];
+            System.arraycopy(ids, 0, next, 0, pos);
+            System.arraycopy(ids, pos + 1, next, pos, ids.length - pos - 1);
+            return next;
+        }
+
+        static long[] union(long[] a, long[] b) {
+            long[] out = new long[a.length + b.length];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < a.length || j < b.length) {
+                long next;
+                if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                    next = a[i++];
+                } else if (i >= a.length || b[j] < a[i]) {
+                    next = b[j++];
+                } else {
+                    next = a[i++];
+                    j++;
+                }
+                out[n++] = next;
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        static long[] intersect(long[] a, long[] b) {
+            long[] out = new long[Math.min(a.length, b.length)];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    out[n++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        }
+    }
+
+    private static final class ScoredId implements Comparable<ScoredId> {
+        final long id;
+        final double score;
+
+        ScoredId(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredId other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(other.id, id);
+        }
+    }
+}
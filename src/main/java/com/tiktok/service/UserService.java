@@ -1,15 +1,28 @@
 package com.tiktok.service;
 
+import com.tiktok.dto.CursorPage;
+import com.tiktok.exception.BadRequestException;
 import com.tiktok.exception.ResourceNotFoundException;
+import com.tiktok.model.DeletionJob;
 import com.tiktok.model.User;
+import com.tiktok.repository.FollowRepository;
 import com.tiktok.repository.UserRepository;
 import com.tiktok.dto.UserDTO;
 import com.tiktok.dto.UserSimpleDTO;
+import com.tiktok.util.AfterCommit;
+import com.tiktok.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -17,9 +30,27 @@ import java.util.List;
 public class UserService {
     
     private final UserRepository userRepository;
+    private final FollowRepository followRepository;
+    private final FollowingTimelineService followingTimelineService;
+    private final FollowGraphCache followGraphCache;
+    private final CounterService counterService;
+    private final ContentDeletionService contentDeletionService;
+    private final UserSearchIndex userSearchIndex;
+    private final SearchSuggestService searchSuggestService;
+    private final UserStateCache userStateCache;
     
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    @Transactional(readOnly = true)
+    public CursorPage<User> getUsers(String cursor, int size) {
+        int limit = CursorPage.clampSize(size);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<User> users;
+        if (cursor == null) {
+            users = userRepository.findLatest(pageRequest);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            users = userRepository.findLatestBefore(after.getCreatedAt(), after.getId(), pageRequest);
+        }
+        return CursorPage.of(users, limit, user -> KeysetCursor.encode(user.getCreatedAt(), user.getId()));
     }
     
     public User getUserById(Long id) {
@@ -41,7 +72,12 @@ public class UserService {
         if (userRepository.existsByEmail(user.getEmail())) {
             throw new IllegalArgumentException("Email already exists: " + user.getEmail());
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        AfterCommit.run(() -> {
+            userSearchIndex.index(saved);
+            searchSuggestService.onUserChanged(saved);
+        });
+        return saved;
     }
     
     public User updateUser(Long id, User userDetails) {
@@ -57,30 +93,123 @@ public class UserService {
         user.setTwitterUrl(userDetails.getTwitterUrl());
         user.setInstagramUrl(userDetails.getInstagramUrl());
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        AfterCommit.run(() -> {
+            userSearchIndex.index(saved);
+            searchSuggestService.onUserChanged(saved);
+        });
+        return saved;
     }
     
-    public void deleteUser(Long id) {
-        User user = getUserById(id);
-        userRepository.delete(user);
+    /**
+     * Xóa user cùng video, comment, like và follow ở background (ContentDeletionService).
+     * Tài khoản bị khóa và token bị thu hồi ngay, không chờ job xóa xong.
+     */
+    public DeletionJob deleteUser(Long id) {
+        requireUser(id);
+        userRepository.disable(id);
+        AfterCommit.run(() -> {
+            userStateCache.invalidate(id);
+            userSearchIndex.remove(id);
+            searchSuggestService.onUserRemoved(id);
+        });
+        return contentDeletionService.enqueue(DeletionJob.USER, id);
     }
     
+    /**
+     * Follow idempotent, counter của hai phía được cộng trực tiếp trong DB
+     */
     public User followUser(Long userId, Long targetUserId) {
+        if (userId.equals(targetUserId)) {
+            throw new BadRequestException("Cannot follow yourself");
+        }
+        requireUser(userId);
+        requireUser(targetUserId);
+        if (followRepository.insertIgnore(userId, targetUserId) > 0) {
+            counterService.add(CounterService.USER_FOLLOWERS, targetUserId, 1);
+            counterService.add(CounterService.USER_FOLLOWINGS, userId, 1);
+            AfterCommit.run(() -> {
+                followGraphCache.onFollow(userId, targetUserId);
+                followingTimelineService.invalidate(userId);
+            });
+        }
         User targetUser = getUserById(targetUserId);
-        targetUser.setFollowersCount(targetUser.getFollowersCount() + 1);
         targetUser.setIsFollowed(true);
-        return userRepository.save(targetUser);
+        return targetUser;
     }
     
+    /**
+     * Unfollow idempotent
+     */
     public User unfollowUser(Long userId, Long targetUserId) {
+        requireUser(targetUserId);
+        if (followRepository.deleteFollow(userId, targetUserId) > 0) {
+            counterService.add(CounterService.USER_FOLLOWERS, targetUserId, -1);
+            counterService.add(CounterService.USER_FOLLOWINGS, userId, -1);
+            AfterCommit.run(() -> {
+                followGraphCache.onUnfollow(userId, targetUserId);
+                followingTimelineService.invalidate(userId);
+            });
+        }
         User targetUser = getUserById(targetUserId);
-        targetUser.setFollowersCount(Math.max(0, targetUser.getFollowersCount() - 1));
         targetUser.setIsFollowed(false);
-        return userRepository.save(targetUser);
+        return targetUser;
+    }
+    
+    /**
+     * Trang follower của user (id giảm dần), isFollowed theo viewer
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<User> getFollowers(Long userId, String cursor, int size, Long viewerId) {
+        requireUser(userId);
+        return loadUsers(followGraphCache.getFollowers(userId, cursor, CursorPage.clampSize(size)), viewerId);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<User> getFollowing(Long userId, String cursor, int size, Long viewerId) {
+        requireUser(userId);
+        return loadUsers(followGraphCache.getFollowing(userId, cursor, CursorPage.clampSize(size)), viewerId);
+    }
+    
+    /**
+     * Gắn isFollowed theo viewer cho cả danh sách user, tra trong FollowGraphCache
+     */
+    public <C extends Collection<User>> C markFollowedBy(C users, Long viewerId) {
+        if (viewerId == null || users.isEmpty()) {
+            return users;
+        }
+        List<Long> userIds = users.stream().map(User::getId).collect(Collectors.toList());
+        Set<Long> followed = followGraphCache.followedAmong(viewerId, userIds);
+        users.forEach(user -> user.setIsFollowed(followed.contains(user.getId())));
+        return users;
+    }
+    
+    public User markFollowedBy(User user, Long viewerId) {
+        markFollowedBy(List.of(user), viewerId);
+        return user;
     }
     
-    public List<User> searchUsers(String query) {
-        return userRepository.searchUsers(query);
+    /**
+     * Tìm user theo nickname/họ tên qua UserSearchIndex, giữ thứ tự xếp hạng của index.
+     * Index chưa build xong thì dùng query LIKE trên DB.
+     */
+    @Transactional(readOnly = true)
+    public List<User> searchUsers(String query, int size) {
+        int limit = CursorPage.clampSize(size);
+        if (!userSearchIndex.isReady()) {
+            return userRepository.searchUsers(query, PageRequest.of(0, limit));
+        }
+        List<Long> ids = userSearchIndex.search(query, limit);
+        Map<Long, User> byId = new HashMap<>();
+        userRepository.findAllById(ids).forEach(user -> byId.put(user.getId(), user));
+        List<User> users = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = byId.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
     }
 
     @Transactional(readOnly = true)
@@ -109,7 +238,27 @@ public class UserService {
     }
     
     
-    private UserSimpleDTO convertToSimpleDTO(User user) {
+    // Hydrate một trang id, giữ thứ tự và bỏ user đã bị xóa
+    private CursorPage<User> loadUsers(CursorPage<Long> ids, Long viewerId) {
+        Map<Long, User> byId = new HashMap<>();
+        userRepository.findAllById(ids.getItems()).forEach(user -> byId.put(user.getId(), user));
+        List<User> users = new ArrayList<>(ids.getItems().size());
+        for (Long id : ids.getItems()) {
+            User user = byId.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return new CursorPage<>(markFollowedBy(users, viewerId), ids.getNextCursor());
+    }
+    
+    private void requireUser(Long id) {
+        if (!userRepository.existsById(id)) {
+            throw new ResourceNotFoundException("User not found with id: " + id);
+        }
+    }
+    
+    static UserSimpleDTO convertToSimpleDTO(User user) {
         return new UserSimpleDTO(
             user.getId(),
             user.getFirstName(),
@@ -0,0 +1,78 @@
+package com.tiktok.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tiktok.repository.UserRepository;
+import com.tiktok.util.CacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Cache trạng thái xác thực của user (token version, bị khóa hay không) để JwtAuthenticationFilter
+ * kiểm tra thu hồi token mà không query DB mỗi request.
+ *
+ * Thu hồi bằng cách tăng users.token_version: access token mang claim "ver" cũ bị từ chối ngay
+ * trên instance gọi invalidate, các instance khác chậm nhất sau auth.user-state.ttl-seconds.
+ * User không còn trong DB được cache như tài khoản bị khóa.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserStateCache {
+
+    private static final UserState DISABLED = new UserState(-1, true);
+
+    private final UserRepository userRepository;
+
+    @Value("${auth.user-state.max-size:100000}")
+    private long maxSize;
+
+    @Value("${auth.user-state.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    private Cache<Long, UserState> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Token phát hành với tokenVersion cho userId còn dùng được không
+     */
+    public boolean isActive(Long userId, int tokenVersion) {
+        UserState state = cache.get(userId, id -> userRepository.findAuthState(id)
+                .map(row -> new UserState(row.getTokenVersion(), Boolean.TRUE.equals(row.getDisabled())))
+                .orElse(DISABLED));
+        return !state.disabled && state.tokenVersion == tokenVersion;
+    }
+
+    /**
+     * Gọi sau khi commit thay đổi token_version/disabled của user
+     */
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+    }
+
+    public Map<String, Object> stats() {
+        return CacheMetrics.snapshot(cache);
+    }
+
+    private static final class UserState {
+        final int tokenVersion;
+        final boolean disabled;
+
+        UserState(int tokenVersion, boolean disabled) {
+            this.tokenVersion = tokenVersion;
+            this.disabled = disabled;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.tiktok.service;
+
+import com.tiktok.model.Video;
+import com.tiktok.repository.VideoRepository;
+import com.tiktok.util.TextFolding;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Inverted index in-memory cho tìm kiếm video theo description và music.
+ *
+ * - Token được fold bỏ dấu tiếng Việt (TextFolding), posting list là long[] đã sắp xếp,
+ *   copy-on-write nên reader không cần lock.
+ * - Chỉ index video public; video chuyển sang private được gỡ khỏi index.
+ * - Cập nhật incremental từ VideoService (create/update/delete, sau commit).
+ * - Rebuild song song theo từng dải id lúc khởi động và định kỳ: mỗi dải gom id theo term
+ *   vào buffer, các dải được nối theo thứ tự id rồi đóng băng thành long[] một lần; các thay
+ *   đổi xảy ra trong lúc rebuild được ghi journal rồi replay lên index mới trước khi swap.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VideoSearchIndex {
+
+    private static final double EXACT_MATCH = 1.0;
+    private static final double PREFIX_MATCH = 0.6;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MAX_QUERY_TOKENS = 8;
+    private static final int MAX_DOC_TERMS = 256;
+    private static final long REBUILD_CHUNK = 5_000;
+
+    private final VideoRepository videoRepository;
+
+    @Value("${search.video.rebuild-threads:0}")
+    private int rebuildThreads;
+
+    private final Object writeLock = new Object();
+    private volatile IndexState state = new IndexState();
+    private volatile boolean ready;
+    private List<Consumer<IndexState>> journal; // khác null khi đang rebuild, guarded by writeLock
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void index(Video video) {
+        if (!isSearchable(video.getViewable())) {
+            remove(video.getId());
+            return;
+        }
+        Doc doc = Doc.of(video.getId(), video.getDescription(), video.getMusic(),
+                video.getLikesCount(), video.getCommentsCount(), video.getSharesCount(), video.getViewsCount());
+        apply(index -> index.put(doc));
+    }
+
+    public void remove(Long videoId) {
+        apply(index -> index.remove(videoId));
+    }
+
+    /**
+     * Trả về tối đa limit video id, xếp theo số term khớp rồi tới mức tương tác
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> queryTokens = TextFolding.tokens(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (queryTokens.size() > MAX_QUERY_TOKENS) {
+            queryTokens = queryTokens.subList(0, MAX_QUERY_TOKENS);
+        }
+
+        IndexState index = state;
+        Map<Long, Double> scores = new HashMap<>();
+        for (String token : queryTokens) {
+            Map<Long, Double> tokenHits = new HashMap<>();
+            long[] exact = index.postings.get(token);
+            if (exact != null) {
+                for (long id : exact) {
+                    tokenHits.put(id, EXACT_MATCH);
+                }
+            }
+            NavigableMap<String, long[]> prefixed =
+                    index.postings.subMap(token, false, token + Character.MAX_VALUE, false);
+            int expansions = 0;
+            for (long[] ids : prefixed.values()) {
+                if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                for (long id : ids) {
+                    tokenHits.merge(id, PREFIX_MATCH, Math::max);
+                }
+            }
+            tokenHits.forEach((id, score) -> scores.merge(id, score, Double::sum));
+        }
+
+        // Top-k bằng min-heap kích thước limit
+        PriorityQueue<ScoredId> heap = new PriorityQueue<>(limit + 1);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            Doc doc = index.docs.get(entry.getKey());
+            if (doc == null) {
+                continue;
+            }
+            heap.add(new ScoredId(entry.getKey(), entry.getValue() + doc.boost));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        ScoredId[] ranked = heap.toArray(new ScoredId[0]);
+        Arrays.sort(ranked, Collections.reverseOrder());
+        List<Long> result = new ArrayList<>(ranked.length);
+        for (ScoredId scored : ranked) {
+            result.add(scored.id);
+        }
+        return result;
+    }
+
+    @Scheduled(
+            initialDelayString = "${search.video.rebuild-initial-delay-ms:0}",
+            fixedDelayString = "${search.video.rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        Builder builder = new Builder();
+        synchronized (writeLock) {
+            journal = new ArrayList<>();
+        }
+        try {
+            Long maxId = videoRepository.findMaxId();
+            if (maxId != null) {
+                int threads = rebuildThreads > 0
+                        ? rebuildThreads
+                        : Math.max(2, Runtime.getRuntime().availableProcessors());
+                ExecutorService pool = Executors.newFixedThreadPool(threads);
+                try {
+                    List<CompletableFuture<Builder>> chunks = new ArrayList<>();
+                    for (long from = 0; from < maxId; from += REBUILD_CHUNK) {
+                        long fromId = from;
+                        long toId = Math.min(from + REBUILD_CHUNK, maxId);
+                        chunks.add(CompletableFuture.supplyAsync(() -> loadChunk(fromId, toId), pool));
+                    }
+                    // Nối theo thứ tự dải id để posting list vẫn tăng dần
+                    for (CompletableFuture<Builder> chunk : chunks) {
+                        builder.addAll(chunk.join());
+                    }
+                } finally {
+                    pool.shutdown();
+                }
+            }
+
+            IndexState next = builder.build();
+            synchronized (writeLock) {
+                journal.forEach(op -> op.accept(next));
+                journal = null;
+                state = next;
+                ready = true;
+            }
+            log.info("Video search index rebuilt: {} videos, {} terms in {} ms",
+                    next.docs.size(), next.postings.size(), System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                journal = null;
+            }
+            log.error("Error rebuilding video search index: {}", e.getMessage(), e);
+        }
+    }
+
+    private Builder loadChunk(long fromId, long toId) {
+        Builder chunk = new Builder();
+        for (VideoRepository.SearchRow row : videoRepository.findSearchRows(fromId, toId)) {
+            if (isSearchable(row.getViewable())) {
+                chunk.add(Doc.of(row.getId(), row.getDescription(), row.getMusic(),
+                        row.getLikesCount(), row.getCommentsCount(), row.getSharesCount(), row.getViewsCount()));
+            }
+        }
+        return chunk;
+    }
+
+    private static boolean isSearchable(String viewable) {
+        return "public".equals(viewable);
+    }
+
+    private void apply(Consumer<IndexState> op) {
+        synchronized (writeLock) {
+            op.accept(state);
+            if (journal != null) {
+                journal.add(op);
+            }
+        }
+    }
+
+    private static final class IndexState {
+        final ConcurrentSkipListMap<String, long[]> postings = new ConcurrentSkipListMap<>();
+        final ConcurrentHashMap<Long, Doc> docs = new ConcurrentHashMap<>();
+
+        void put(Doc doc) {
+            Doc old = docs.put(doc.id, doc);
+            if (old != null) {
+                for (String term : old.terms) {
+                    if (!doc.hasTerm(term)) {
+                        removePosting(term, doc.id);
+                    }
+                }
+            }
+            for (String term : doc.terms) {
+                if (old == null || !old.hasTerm(term)) {
+                    addPosting(term, doc.id);
+                }
+            }
+        }
+
+        void remove(Long id) {
+            Doc old = docs.remove(id);
+            if (old != null) {
+                for (String term : old.terms) {
+                    removePosting(term, id);
+                }
+            }
+        }
+
+        private void addPosting(String term, long id) {
+            postings.compute(term, (t, ids) -> {
+                if (ids == null) {
+                    return new long[]{id};
+                }
+                int pos = Arrays.binarySearch(ids, id);
+                if (pos >= 0) {
+                    return ids;
+                }
+                int insertAt = -pos - 1;
+                long[] next = new long[ids.length + 1];
+                System.arraycopy(ids, 0, next, 0, insertAt);
+                next[insertAt] = id;
+                System.arraycopy(ids, insertAt, next, insertAt + 1, ids.length - insertAt);
+                return next;
+            });
+        }
+
+        private void removePosting(String term, long id) {
+            postings.computeIfPresent(term, (t, ids) -> {
+                int pos = Arrays.binarySearch(ids, id);
+                if (pos < 0) {
+                    return ids;
+                }
+                if (ids.length == 1) {
+                    return null;
+                }
+                long[] next = new long[ids.length - 1];
+                System.arraycopy(ids, 0, next, 0, pos);
+                System.arraycopy(ids, pos + 1, next, pos, ids.length - pos - 1);
+                return next;
+            });
+        }
+    }
+
+    /**
+     * Dựng IndexState cho rebuild: id của mỗi term được append vào buffer (row đến theo id
+     * tăng dần) thay vì copy cả posting list cho mỗi video
+     */
+    private static final class Builder {
+        final Map<Long, Doc> docs = new HashMap<>();
+        final Map<String, LongBuffer> postings = new HashMap<>();
+
+        void add(Doc doc) {
+            docs.put(doc.id, doc);
+            for (String term : doc.terms) {
+                postings.computeIfAbsent(term, t -> new LongBuffer()).append(doc.id);
+            }
+        }
+
+        /**
+         * Nối builder của dải id kế tiếp
+         */
+        void addAll(Builder next) {
+            docs.putAll(next.docs);
+            next.postings.forEach((term, ids) -> postings.computeIfAbsent(term, t -> new LongBuffer()).appendAll(ids));
+        }
+
+        IndexState build() {
+            IndexState state = new IndexState();
+            state.docs.putAll(docs);
+            postings.forEach((term, ids) -> state.postings.put(term, ids.toSortedArray()));
+            return state;
+        }
+    }
+
+    /**
+     * Mảng long tự nới, đóng băng thành long[] đã sắp xếp và bỏ trùng
+     */
+    private static final class LongBuffer {
+        private long[] values = new long[4];
+        private int size;
+
+        void append(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void appendAll(LongBuffer other) {
+            if (size + other.size > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            }
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        long[] toSortedArray() {
+            long[] result = Arrays.copyOf(values, size);
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = result[i - 1] < result[i];
+            }
+            if (sorted) {
+                return result;
+            }
+            Arrays.sort(result);
+            return Arrays.stream(result).distinct().toArray();
+        }
+    }
+
+    private static final class Doc {
+        final long id;
+        final String[] terms; // đã sắp xếp để binary search
+        final double boost;   // [0, 0.5): chỉ phân hạng giữa các video khớp cùng số term
+
+        private Doc(long id, String[] terms, double boost) {
+            this.id = id;
+            this.terms = terms;
+            this.boost = boost;
+        }
+
+        static Doc of(Long id, String description, String music,
+                      Integer likes, Integer comments, Integer shares, Integer views) {
+            List<String> tokens = TextFolding.tokens(description);
+            tokens.addAll(TextFolding.tokens(music));
+            String[] terms = tokens.stream().distinct().limit(MAX_DOC_TERMS).sorted().toArray(String[]::new);
+
+            double engagement = valueOf(likes) + 2.0 * valueOf(comments)
+                    + 3.0 * valueOf(shares) + 0.1 * valueOf(views);
+            double logEngagement = Math.log1p(engagement);
+            return new Doc(id, terms, 0.5 * logEngagement / (1.0 + logEngagement));
+        }
+
+        boolean hasTerm(String term) {
+            return Arrays.binarySearch(terms, term) >= 0;
+        }
+
+        private static long valueOf(Integer count) {
+            return count == null ? 0 : count;
+        }
+    }
+
+    private static final class ScoredId implements Comparable<ScoredId> {
+        final long id;
+        final double score;
+
+        ScoredId(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(ScoredId other) {
+            int byScore = Double.compare(score, other.score);
+            // Cùng điểm thì video mới hơn (id lớn hơn) xếp trước
+            return byScore != 0 ? byScore : Long.compare(id, other.id);
+        }
+    }
+}
@@ -1,48 +1,117 @@
 package com.tiktok.service;
 
+import com.tiktok.dto.CursorPage;
 import com.tiktok.exception.ResourceNotFoundException;
+import com.tiktok.model.DeletionJob;
 import com.tiktok.model.Video;
-import com.tiktok.model.User;
+import com.tiktok.repository.VideoLikeRepository;
 import com.tiktok.repository.VideoRepository;
 import com.tiktok.repository.UserRepository;
+import com.tiktok.util.AfterCommit;
+import com.tiktok.util.CursorCodec;
+import com.tiktok.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Transactional
 public class VideoService {
 
+    private static final int MAX_SEARCH_RESULTS = 1000;
+
     private final VideoRepository videoRepository;
+    private final VideoLikeRepository videoLikeRepository;
     private final UserRepository userRepository;
+    private final SuggestFeedService suggestFeedService;
+    private final VideoSearchIndex videoSearchIndex;
+    private final SearchSuggestService searchSuggestService;
+    private final ViewCountService viewCountService;
+    private final TrendingService trendingService;
+    private final FollowingTimelineService followingTimelineService;
+    private final FollowGraphCache followGraphCache;
+    private final CounterService counterService;
+    private final ContentDeletionService contentDeletionService;
+
+    public List<Video> getSuggestVideos(long seed, int page, int size) {
+        return viewCountService.applyPending(suggestFeedService.getPage(seed, page, size));
+    }
+
+    /**
+     * Video trending: thứ tự lấy từ ranking in-memory, DB chỉ dùng để hydrate trang hiện tại
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Video> getTrendingVideos(String cursor, int size) {
+        CursorPage<Long> ids = trendingService.getPage(cursor, CursorPage.clampSize(size));
+        List<Video> videos = trendingService.loadVideos(ids.getItems());
+        return new CursorPage<>(viewCountService.applyPending(videos), ids.getNextCursor());
+    }
 
-    public List<Video> getSuggestVideos(int page, int size) {
-        Pageable pageable = PageRequest.of(page - 1, size);
-        Page<Video> videoPage = videoRepository.findRandomPublicVideos(pageable);
-        return videoPage.getContent();
+    /**
+     * Video mới của những người user đang follow, đọc từ timeline buffer
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Video> getFollowingVideos(Long userId, String cursor, int size) {
+        CursorPage<Long> ids = followingTimelineService.getPage(userId, cursor, CursorPage.clampSize(size));
+        List<Video> videos = followingTimelineService.loadVideos(ids.getItems());
+        return new CursorPage<>(viewCountService.applyPending(videos), ids.getNextCursor());
     }
 
-    public List<Video> getAllVideos() {
-        return videoRepository.findAll();
+    @Transactional(readOnly = true)
+    public CursorPage<Video> getVideos(String cursor, int size) {
+        int limit = CursorPage.clampSize(size);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<Video> videos;
+        if (cursor == null) {
+            videos = videoRepository.findLatest(pageRequest);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            videos = videoRepository.findLatestBefore(after.getCreatedAt(), after.getId(), pageRequest);
+        }
+        return CursorPage.of(viewCountService.applyPending(videos), limit, VideoService::cursorOf);
     }
 
     public Video getVideoById(Long id) {
         return videoRepository.findById(id)
+                .map(viewCountService::applyPending)
                 .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + id));
     }
 
-    public List<Video> getVideosByUserId(Long userId) {
-        return videoRepository.findPublicVideosByUserId(userId);
+    @Transactional(readOnly = true)
+    public CursorPage<Video> getVideosByUserId(Long userId, String cursor, int size) {
+        int limit = CursorPage.clampSize(size);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<Video> videos;
+        if (cursor == null) {
+            videos = videoRepository.findPublicVideosByUserId(userId, pageRequest);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            videos = videoRepository.findPublicVideosByUserIdBefore(
+                    userId, after.getCreatedAt(), after.getId(), pageRequest);
+        }
+        return CursorPage.of(viewCountService.applyPending(videos), limit, VideoService::cursorOf);
     }
 
     public Video createVideo(Video video) {
-        return videoRepository.save(video);
+        Video savedVideo = videoRepository.save(video);
+        AfterCommit.run(() -> {
+            videoSearchIndex.index(savedVideo);
+            searchSuggestService.onVideoChanged(savedVideo);
+            followingTimelineService.onVideoCreated(savedVideo);
+        });
+        return savedVideo;
     }
 
     public Video updateVideo(Long id, Video videoDetails) {
@@ -55,64 +124,149 @@ public class VideoService {
         video.setViewable(videoDetails.getViewable());
         video.setAllows(videoDetails.getAllows());
 
-        return videoRepository.save(video);
+        Video savedVideo = videoRepository.save(video);
+        AfterCommit.run(() -> {
+            videoSearchIndex.index(savedVideo);
+            searchSuggestService.onVideoChanged(savedVideo);
+        });
+        return savedVideo;
     }
 
-    public void deleteVideo(Long id) {
-        Video video = getVideoById(id);
-        videoRepository.delete(video);
+    /**
+     * Xóa video cùng comment và like ở background (ContentDeletionService)
+     */
+    public DeletionJob deleteVideo(Long id) {
+        getVideoById(id);
+        return contentDeletionService.enqueue(DeletionJob.VIDEO, id);
     }
 
-
-    public Video incrementViewCount(Long id) {
-        Video video = getVideoById(id);
-        video.setViewsCount(video.getViewsCount() + 1);
-        return videoRepository.save(video);
+    /**
+     * Ghi nhận view vào counter in-memory (ViewCountService flush định kỳ), không update row
+     * videos và không load entity cho mỗi lượt xem. Trả về tổng view đã gồm phần chưa flush.
+     */
+    public long incrementViewCount(Long id) {
+        int persisted = videoRepository.findViewsCount(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + id));
+        viewCountService.recordView(id);
+        trendingService.recordView(id);
+        return viewCountService.totalViews(id, persisted);
     }
 
-    public List<Video> searchVideos(String query) {
-        return videoRepository.searchVideos(query);
+    public Video shareVideo(Long id) {
+        if (videoRepository.incrementSharesCount(id) == 0) {
+            throw new ResourceNotFoundException("Video not found with id: " + id);
+        }
+        AfterCommit.run(() -> trendingService.recordShare(id));
+        return getVideoById(id);
     }
 
-    public Video likeVideo(Long videoId, Long likerId) {
-        Video video = getVideoById(videoId);
-        User videoOwner = video.getUser();
-
-        // Toggle like status
-        boolean wasLiked = video.getIsLiked();
-        video.setIsLiked(!wasLiked);
+    /**
+     * Tìm kiếm video qua inverted index (xếp hạng theo term khớp + tương tác).
+     * Khi index chưa build xong lúc khởi động thì fallback sang query LIKE.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Video> searchVideos(String query, String cursor, int size) {
+        int limit = CursorPage.clampSize(size);
+        if (videoSearchIndex.isReady()) {
+            return searchIndexedVideos(query, cursor, limit);
+        }
 
-        // Cập nhật likesCount của video
-        if (!wasLiked) {
-            // Like video
-            video.setLikesCount(video.getLikesCount() + 1);
+        PageRequest pageRequest = PageRequest.of(0, limit + 1);
+        List<Video> videos;
+        if (cursor == null) {
+            videos = videoRepository.searchVideos(query, pageRequest);
         } else {
-            // Unlike video
-            video.setLikesCount(Math.max(0, video.getLikesCount() - 1));
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            videos = videoRepository.searchVideosBefore(query, after.getCreatedAt(), after.getId(), pageRequest);
         }
+        return CursorPage.of(viewCountService.applyPending(videos), limit, VideoService::cursorOf);
+    }
 
-        Video savedVideo = videoRepository.save(video);
-
-        // Tính lại tổng likesCount của user (tổng likesCount của tất cả video của user
-        // đó)
-        updateUserTotalLikesCount(videoOwner.getId());
+    /**
+     * Like idempotent: trả về true nếu đây là like mới (để gửi notification).
+     * likesCount của video và tổng like của chủ video được cộng trực tiếp trong DB.
+     */
+    public boolean likeVideo(Long videoId, Long userId) {
+        Long ownerId = getOwnerId(videoId);
+        if (videoLikeRepository.insertIgnore(userId, videoId) == 0) {
+            return false;
+        }
+        counterService.add(CounterService.VIDEO_LIKES, videoId, 1);
+        counterService.add(CounterService.USER_LIKES, ownerId, 1);
+        AfterCommit.run(() -> trendingService.recordLike(videoId));
+        return true;
+    }
 
-        return savedVideo;
+    /**
+     * Unlike idempotent: trả về true nếu trước đó user đã like
+     */
+    public boolean unlikeVideo(Long videoId, Long userId) {
+        Long ownerId = getOwnerId(videoId);
+        if (videoLikeRepository.deleteLike(userId, videoId) == 0) {
+            return false;
+        }
+        counterService.add(CounterService.VIDEO_LIKES, videoId, -1);
+        counterService.add(CounterService.USER_LIKES, ownerId, -1);
+        return true;
     }
 
     /**
-     * Tính lại tổng likesCount của user dựa trên tổng likesCount của tất cả video
-     * của user đó
+     * Gắn isLiked theo viewer cho cả trang video bằng một query IN duy nhất,
+     * và isFollowed của chủ video qua FollowGraphCache
      */
-    private void updateUserTotalLikesCount(Long userId) {
-        List<Video> userVideos = videoRepository.findByUserId(userId);
-        int totalLikes = userVideos.stream()
-                .mapToInt(Video::getLikesCount)
-                .sum();
-
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + userId));
-        user.setLikesCount(totalLikes);
-        userRepository.save(user);
+    @Transactional(readOnly = true)
+    public <C extends Collection<Video>> C markLikedBy(C videos, Long viewerId) {
+        if (viewerId == null || videos.isEmpty()) {
+            return videos;
+        }
+        List<Long> videoIds = videos.stream().map(Video::getId).collect(Collectors.toList());
+        Set<Long> liked = new HashSet<>(videoLikeRepository.findLikedVideoIds(viewerId, videoIds));
+        videos.forEach(video -> video.setIsLiked(liked.contains(video.getId())));
+        Set<Long> ownerIds = videos.stream().map(video -> video.getUser().getId()).collect(Collectors.toSet());
+        Set<Long> followed = followGraphCache.followedAmong(viewerId, ownerIds);
+        videos.forEach(video -> video.getUser().setIsFollowed(followed.contains(video.getUser().getId())));
+        return videos;
+    }
+
+    @Transactional(readOnly = true)
+    public Video markLikedBy(Video video, Long viewerId) {
+        markLikedBy(List.of(video), viewerId);
+        return video;
+    }
+
+    private Long getOwnerId(Long videoId) {
+        return videoRepository.findOwnerId(videoId)
+                .orElseThrow(() -> new ResourceNotFoundException("Video not found with id: " + videoId));
+    }
+
+    private CursorPage<Video> searchIndexedVideos(String query, String cursor, int limit) {
+        int offset = cursor == null ? 0 : CursorCodec.decodeOffset(cursor);
+        if (offset >= MAX_SEARCH_RESULTS) {
+            return new CursorPage<>(Collections.emptyList(), null);
+        }
+
+        List<Long> rankedIds = videoSearchIndex.search(query, Math.min(offset + limit + 1, MAX_SEARCH_RESULTS));
+        if (rankedIds.size() <= offset) {
+            return new CursorPage<>(Collections.emptyList(), null);
+        }
+        int end = Math.min(offset + limit, rankedIds.size());
+        List<Long> pageIds = rankedIds.subList(offset, end);
+
+        Map<Long, Video> byId = new HashMap<>();
+        videoRepository.findAllById(pageIds).forEach(video -> byId.put(video.getId(), video));
+        List<Video> videos = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            Video video = byId.get(id);
+            if (video != null) {
+                videos.add(video);
+            }
+        }
+
+        String nextCursor = rankedIds.size() > end ? CursorCodec.encodeOffset(end) : null;
+        return new CursorPage<>(viewCountService.applyPending(videos), nextCursor);
+    }
+
+    private static String cursorOf(Video video) {
+        return KeysetCursor.encode(video.getCreatedAt(), video.getId());
     }
 }
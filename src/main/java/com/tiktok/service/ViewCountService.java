@@ -0,0 +1,93 @@
+package com.tiktok.service;
+
+import com.tiktok.model.Video;
+import com.tiktok.util.DeltaBuffer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Đếm view kiểu write-behind: mỗi view chỉ cộng vào counter in-memory,
+ * task định kỳ flush xuống DB bằng batch "views_count = views_count + ?".
+ * Không còn load/save entity cho mỗi view và không mất view do race read-modify-write.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ViewCountService {
+
+    private static final String FLUSH_SQL = "UPDATE videos SET views_count = views_count + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final DeltaBuffer pendingViews = new DeltaBuffer();
+
+    public void recordView(Long videoId) {
+        pendingViews.add(videoId, 1);
+    }
+
+    /**
+     * Gắn số view chưa flush vào video để getViewsCount() trả về tổng persisted + pending
+     */
+    public Video applyPending(Video video) {
+        if (video != null) {
+            video.setPendingViews(pendingViews.pending(video.getId()));
+        }
+        return video;
+    }
+
+    /**
+     * Tổng view persisted + pending của một video
+     */
+    public long totalViews(Long videoId, long persisted) {
+        return persisted + pendingViews.pending(videoId);
+    }
+
+    public <C extends Collection<Video>> C applyPending(C videos) {
+        videos.forEach(this::applyPending);
+        return videos;
+    }
+
+    // synchronized: job định kỳ và @PreDestroy không được drain chồng lên nhau
+    @Scheduled(fixedDelayString = "${views.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        write(pendingViews.drain());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void write(Map<Long, Long> deltas) {
+        if (deltas.isEmpty()) {
+            pendingViews.completeFlush();
+            return;
+        }
+
+        // Sắp xếp theo id để các batch luôn lock row theo cùng thứ tự
+        List<Object[]> batch = new ArrayList<>(deltas.size());
+        new TreeMap<>(deltas).forEach((id, delta) -> batch.add(new Object[]{delta, id}));
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batch));
+            pendingViews.completeFlush();
+            log.debug("Flushed view counts for {} videos", batch.size());
+        } catch (DataAccessException e) {
+            log.error("Error flushing view counts, will retry: {}", e.getMessage(), e);
+            pendingViews.requeue(deltas);
+        }
+    }
+}
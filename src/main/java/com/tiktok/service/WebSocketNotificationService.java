@@ -3,6 +3,7 @@ package com.tiktok.service;
 import com.tiktok.dto.NotificationDTO;
 import com.tiktok.dto.MessageDTO;
 import com.tiktok.dto.ChatListItemDTO;
+import com.tiktok.model.UploadJob;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -175,4 +176,16 @@ public class WebSocketNotificationService {
         private Long messageId;
         private Boolean isRead;
     }
-}
\ No newline at end of file
+
+    /**
+     * Đẩy trạng thái job upload video (tiến độ, kết quả) cho người upload
+     */
+    public void sendUploadStatus(Long userId, UploadJob job) {
+        try {
+            String destination = "/user/" + userId + "/queue/uploads";
+            messagingTemplate.convertAndSend(destination, job);
+        } catch (Exception e) {
+            log.error("Error sending upload status to user {}: {}", userId, e.getMessage(), e);
+        }
+    }
+}
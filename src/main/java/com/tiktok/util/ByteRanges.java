@@ -0,0 +1,80 @@
+package com.tiktok.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tập các khoảng byte [start, end) đã nhận của một upload, luôn được sắp xếp và gộp.
+ * Lưu DB dạng chuỗi "0-1048576,2097152-3145728".
+ */
+public final class ByteRanges {
+
+    private ByteRanges() {
+    }
+
+    public static List<long[]> parse(String value) {
+        List<long[]> ranges = new ArrayList<>();
+        if (value == null || value.isEmpty()) {
+            return ranges;
+        }
+        for (String part : value.split(",")) {
+            int dash = part.indexOf('-');
+            ranges.add(new long[]{Long.parseLong(part.substring(0, dash)), Long.parseLong(part.substring(dash + 1))});
+        }
+        return ranges;
+    }
+
+    public static String format(List<long[]> ranges) {
+        StringBuilder sb = new StringBuilder();
+        for (long[] range : ranges) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(range[0]).append('-').append(range[1]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Thêm [start, end) và gộp với các khoảng chồng lấn hoặc liền kề
+     */
+    public static List<long[]> add(List<long[]> ranges, long start, long end) {
+        if (end <= start) {
+            return ranges;
+        }
+        List<long[]> merged = new ArrayList<>(ranges.size() + 1);
+        long newStart = start;
+        long newEnd = end;
+        boolean inserted = false;
+        for (long[] range : ranges) {
+            if (range[1] < newStart) {
+                merged.add(range);
+            } else if (range[0] > newEnd) {
+                if (!inserted) {
+                    merged.add(new long[]{newStart, newEnd});
+                    inserted = true;
+                }
+                merged.add(range);
+            } else {
+                newStart = Math.min(newStart, range[0]);
+                newEnd = Math.max(newEnd, range[1]);
+            }
+        }
+        if (!inserted) {
+            merged.add(new long[]{newStart, newEnd});
+        }
+        return merged;
+    }
+
+    public static long total(List<long[]> ranges) {
+        long total = 0;
+        for (long[] range : ranges) {
+            total += range[1] - range[0];
+        }
+        return total;
+    }
+
+    public static boolean covers(List<long[]> ranges, long size) {
+        return size == 0 || (ranges.size() == 1 && ranges.get(0)[0] == 0 && ranges.get(0)[1] >= size);
+    }
+}
@@ -0,0 +1,35 @@
+package com.tiktok.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thống kê của một Caffeine cache (cần recordStats()) dạng map để trả qua API
+ */
+public final class CacheMetrics {
+
+    private CacheMetrics() {
+    }
+
+    public static Map<String, Object> snapshot(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("hits", stats.hitCount());
+        snapshot.put("misses", stats.missCount());
+        snapshot.put("hitRate", stats.hitRate());
+        snapshot.put("loads", stats.loadCount());
+        snapshot.put("averageLoadMs", stats.averageLoadPenalty() / 1_000_000.0);
+        snapshot.put("evictions", stats.evictionCount());
+        snapshot.put("size", cache.estimatedSize());
+        cache.policy().eviction().ifPresent(eviction -> {
+            if (eviction.isWeighted()) {
+                snapshot.put("weightedSize", eviction.weightedSize().orElse(0L));
+            }
+            snapshot.put("maximum", eviction.getMaximum());
+        });
+        return snapshot;
+    }
+}
@@ -0,0 +1,69 @@
+package com.tiktok.util;
+
+import com.tiktok.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Mã hóa cursor phân trang thành chuỗi opaque (base64 url-safe) để client
+ * chỉ việc gửi lại nguyên văn.
+ */
+public final class CursorCodec {
+
+    private static final String SEPARATOR = "~";
+
+    private CursorCodec() {
+    }
+
+    public static String encode(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Cursor dạng offset cho các danh sách được xếp hạng (không có khóa keyset ổn định)
+     */
+    public static String encodeOffset(int offset) {
+        return encode(offset);
+    }
+
+    public static int decodeOffset(String cursor) {
+        try {
+            int offset = Integer.parseInt(decode(cursor, 1)[0]);
+            if (offset < 0) {
+                throw new BadRequestException("Invalid cursor");
+            }
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    public static String[] decode(String cursor, int expectedParts) {
+        String[] parts = decode(cursor);
+        if (parts.length != expectedParts) {
+            throw new BadRequestException("Invalid cursor");
+        }
+        return parts;
+    }
+
+    /**
+     * Giải mã cursor có số phần thay đổi (vd. cursor nhiều chế độ, phân biệt bằng phần đầu)
+     */
+    public static String[] decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return raw.split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.tiktok.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gom các delta counter theo id trong bộ nhớ (LongAdder striped, không lock
+ * trên đường ghi) để flush xuống DB theo batch.
+ *
+ * Mỗi lần drain sẽ đóng generation hiện tại, thay bằng generation mới rồi chờ
+ * các thread đang ghi dở vào generation cũ ghi xong trước khi gom delta,
+ * nên không mất delta nào. Số thread đang ghi được chia stripe theo thread (+1/-1 của một
+ * lần ghi luôn vào cùng stripe), drain chờ từng stripe về 0. Phần đang flush vẫn được tính
+ * vào pending() cho đến khi completeFlush()/requeue().
+ *
+ * Mỗi thời điểm chỉ được có một lần flush (drain ... completeFlush/requeue), caller tự serialize.
+ */
+public class DeltaBuffer {
+
+    // Lũy thừa của 2, >= 2 * số CPU
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+    private static final int STRIDE = 16;
+
+    private volatile Generation active = new Generation();
+    private volatile Map<Long, Long> flushing = Map.of();
+
+    public void add(Long id, long delta) {
+        int stripe = stripeOf(Thread.currentThread());
+        while (true) {
+            Generation generation = active;
+            generation.writers.incrementAndGet(stripe);
+            try {
+                if (!generation.closed) {
+                    generation.deltas.computeIfAbsent(id, key -> new LongAdder()).add(delta);
+                    return;
+                }
+            } finally {
+                generation.writers.decrementAndGet(stripe);
+            }
+        }
+    }
+
+    /**
+     * Tổng delta chưa được ghi xuống DB của một id
+     */
+    public long pending(Long id) {
+        LongAdder adder = active.deltas.get(id);
+        return (adder == null ? 0 : adder.sum()) + flushing.getOrDefault(id, 0L);
+    }
+
+    /**
+     * Các id đang có delta chưa ghi xuống DB (kể cả phần đang flush)
+     */
+    public Set<Long> pendingIds() {
+        Set<Long> ids = new HashSet<>(active.deltas.keySet());
+        ids.addAll(flushing.keySet());
+        return ids;
+    }
+
+    /**
+     * Lấy toàn bộ delta hiện có ra để flush.
+     * Phải gọi completeFlush() (hoặc requeue() khi lỗi) sau khi ghi DB.
+     */
+    public synchronized Map<Long, Long> drain() {
+        Generation retired = active;
+        retired.closed = true;
+        active = new Generation();
+        // Thread tăng stripe sau khi đã kiểm tra qua stripe đó sẽ thấy closed và không ghi
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            while (retired.writers.get(stripe * STRIDE) != 0) {
+                Thread.onSpinWait();
+            }
+        }
+
+        Map<Long, Long> deltas = new HashMap<>();
+        retired.deltas.forEach((id, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                deltas.put(id, delta);
+            }
+        });
+        flushing = deltas;
+        return deltas;
+    }
+
+    public synchronized void completeFlush() {
+        flushing = Map.of();
+    }
+
+    /**
+     * Flush lỗi: trả delta về buffer để lần sau ghi lại
+     */
+    public synchronized void requeue(Map<Long, Long> deltas) {
+        deltas.forEach(this::add);
+        flushing = Map.of();
+    }
+
+    private static int stripeOf(Thread thread) {
+        return (int) (thread.getId() & (STRIPES - 1)) * STRIDE;
+    }
+
+    private static final class Generation {
+        final ConcurrentHashMap<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+        // Số thread đang ghi, mỗi stripe cách nhau STRIDE int (một cache line)
+        final AtomicIntegerArray writers = new AtomicIntegerArray(STRIPES * STRIDE);
+        volatile boolean closed;
+    }
+}
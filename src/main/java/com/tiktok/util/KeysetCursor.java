@@ -0,0 +1,33 @@
+package com.tiktok.util;
+
+import com.tiktok.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Cursor keyset theo (createdAt, id) cho các danh sách sắp xếp mới nhất trước.
+ * Trang sau lấy các bản ghi đứng sau cursor trong thứ tự (createdAt DESC, id DESC).
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetCursor {
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    public static String encode(LocalDateTime createdAt, Long id) {
+        return CursorCodec.encode(createdAt, id);
+    }
+
+    public static KeysetCursor decode(String cursor) {
+        String[] parts = CursorCodec.decode(cursor, 2);
+        try {
+            return new KeysetCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}